@@ -4,19 +4,33 @@ import com.fasterxml.jackson.core.*;
 import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.databind.deser.Deserializers;
 import com.fasterxml.jackson.databind.module.SimpleModule;
-import com.fasterxml.jackson.databind.node.BigIntegerNode;
-import com.fasterxml.jackson.databind.node.DecimalNode;
 import com.fasterxml.jackson.databind.ser.Serializers;
 import com.fasterxml.jackson.databind.type.TypeFactory;
-import io.vavr.Tuple2;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedOutputStream;
+import org.reactivecouchbase.json.mapping.Writer;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.io.StringWriter;
-import java.math.BigDecimal;
-import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 public class Jackson {
 
+    private static final long MAX_MAPPED_REGION = Integer.MAX_VALUE;
+
     private static ObjectMapper mapper = null;
     private static JsonFactory jsonFactory = null;
 
@@ -45,6 +59,14 @@ public class Jackson {
         }
     }
 
+    public static JsonGenerator bytesJsonGenerator(OutputStream out) {
+        try {
+            return jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
     public static JsonParser jsonParser(String str) {
         try {
             return jsonFactory.createParser(str);
@@ -53,14 +75,63 @@ public class Jackson {
         }
     }
 
-    public static JsValue parseJsValue(String in) {
+    public static JsonParser jsonParser(byte[] bytes) {
+        return jsonParser(bytes, 0, bytes.length);
+    }
+
+    public static JsonParser jsonParser(byte[] bytes, int offset, int length) {
+        try {
+            return jsonFactory.createParser(bytes, offset, length);
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    public static JsonParser jsonParser(InputStream in) {
         try {
-            return mapper.readValue(in, JsValue.class);
+            return jsonFactory.createParser(in);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    // reads the remaining bytes of the buffer without moving its position
+    public static JsonParser jsonParser(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return jsonParser(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+        return jsonParser(new ByteBufferBackedInputStream(buffer.duplicate()));
+    }
+
+    // the file is memory mapped, the parser pulls the mapped pages through its own small buffer
+    public static JsonParser jsonParser(Path path) {
+        try {
+            return jsonFactory.createParser(mappedInputStream(path));
         } catch (Exception e) {
             throw Throwables.propagate(e);
         }
     }
 
+    static InputStream mappedInputStream(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= MAX_MAPPED_REGION) {
+                return new ByteBufferBackedInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+            // a single mapping is limited to 2GB, bigger files are read as a sequence of mappings
+            List<InputStream> regions = new ArrayList<>();
+            for (long position = 0; position < size; position += MAX_MAPPED_REGION) {
+                long length = Math.min(MAX_MAPPED_REGION, size - position);
+                regions.add(new ByteBufferBackedInputStream(channel.map(FileChannel.MapMode.READ_ONLY, position, length)));
+            }
+            return new SequenceInputStream(Collections.enumeration(regions));
+        }
+    }
+
+    public static JsValue parseJsValue(String in) {
+        return JsParser.DEFAULT.parse(in);
+    }
+
     public static String generateFromJsValue(JsValue in) {
         try {
             StringWriter sw = new java.io.StringWriter();
@@ -73,14 +144,156 @@ public class Jackson {
         }
     }
 
+    public static byte[] generateBytesFromJsValue(JsValue in) {
+        RawJson raw = in.raw();
+        if (raw != null) {
+            return Arrays.copyOfRange(raw.bytes, raw.offset, raw.offset + raw.length);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeJsValue(in, out);
+        return out.toByteArray();
+    }
+
+    // UTF-8 is generated straight into the stream, which is flushed but left open
+    public static void writeJsValue(JsValue in, OutputStream out) {
+        try {
+            RawJson raw = in.raw();
+            if (raw != null) {
+                raw.writeUnquotedUTF8(out);
+                out.flush();
+                return;
+            }
+            writeAndClose(in, bytesJsonGenerator(out));
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    public static void writeJsValue(JsValue in, java.io.Writer out) {
+        try {
+            writeAndClose(in, jsonFactory.createGenerator(out));
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    // the bytes are put at the buffer's position, a BufferOverflowException is thrown when it is too small
+    public static void writeJsValue(JsValue in, ByteBuffer out) {
+        writeJsValue(in, new ByteBufferBackedOutputStream(out));
+    }
+
+    // elements are converted and written one at a time, only the generator's buffer is kept in memory.
+    // With flushEvery > 0 the stream is flushed each time that many elements have been written
+    public static <T> void writeJsArray(java.util.Iterator<T> items, Writer<T> writer, OutputStream out, int flushEvery) {
+        writeAll(items, writer, out, flushEvery, false);
+    }
+
+    // one compact value per line, each line ends with \n
+    public static <T> void writeJsLines(java.util.Iterator<T> items, Writer<T> writer, OutputStream out, int flushEvery) {
+        writeAll(items, writer, out, flushEvery, true);
+    }
+
+    private static <T> void writeAll(java.util.Iterator<T> items, Writer<T> writer, OutputStream out, int flushEvery, boolean lines) {
+        try (JsonGenerator gen = bytesJsonGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            gen.setRootValueSeparator(null);
+            if (!lines) {
+                gen.writeStartArray();
+            }
+            long count = 0L;
+            while (items.hasNext()) {
+                JsValueWriter.write(writer.write(items.next()), gen);
+                if (lines) {
+                    gen.writeRaw('\n');
+                }
+                count++;
+                if (flushEvery > 0 && count % flushEvery == 0) {
+                    gen.flush();
+                }
+            }
+            if (!lines) {
+                gen.writeEndArray();
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    // sorted fields and normalized numbers, see JsValueWriter
+    public static void writeCanonicalJsValue(JsValue in, OutputStream out) {
+        try (JsonGenerator gen = bytesJsonGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            JsValueWriter.write(in, gen, true);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    // canonical bytes go through the generator's buffer into the digest, the document is never materialized
+    public static byte[] digest(JsValue in, MessageDigest digest) {
+        writeCanonicalJsValue(in, new DigestOutputStream(new CountingOutputStream(), digest));
+        return digest.digest();
+    }
+
+    // exact size of the compact UTF-8 form, counted while generating it unless it is already known
+    public static long serializedSize(JsValue in) {
+        RawJson raw = in.raw();
+        if (raw != null) {
+            return raw.length;
+        }
+        CountingOutputStream out = new CountingOutputStream();
+        writeJsValue(in, out);
+        return out.count;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count = 0L;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    private static void writeAndClose(JsValue in, JsonGenerator generator) throws IOException {
+        try (JsonGenerator gen = generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            JsValueWriter.write(in, gen);
+        }
+    }
+
+    public static byte[] prettifyBytes(JsValue in) {
+        return prettifyBytes(in, PrettyFormat.DEFAULT);
+    }
+
+    public static byte[] prettifyBytes(JsValue in, PrettyFormat format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writePrettyJsValue(in, out, format);
+        return out.toByteArray();
+    }
+
     public static String prettify(JsValue in) {
+        return prettify(in, PrettyFormat.DEFAULT);
+    }
+
+    public static String prettify(JsValue in, PrettyFormat format) {
+        StringWriter sw = new StringWriter();
         try {
-            StringWriter sw = new java.io.StringWriter();
-            JsonGenerator gen = stringJsonGenerator(sw).setPrettyPrinter(new com.fasterxml.jackson.core.util.DefaultPrettyPrinter());
-            mapper.writerWithDefaultPrettyPrinter().writeValue(gen, in);
-            sw.flush();
-            return sw.getBuffer().toString();
-        } catch (Exception e) {
+            writeAndClose(in, stringJsonGenerator(sw).setPrettyPrinter(new JsPrettyPrinter(format)));
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        return sw.toString();
+    }
+
+    // same single pass as the compact output, the printer only adds line breaks and indentation
+    public static void writePrettyJsValue(JsValue in, OutputStream out, PrettyFormat format) {
+        try {
+            writeAndClose(in, bytesJsonGenerator(out).setPrettyPrinter(new JsPrettyPrinter(format)));
+        } catch (IOException e) {
             throw Throwables.propagate(e);
         }
     }
@@ -94,8 +307,8 @@ public class Jackson {
     }
 
     public static JsValue jsonNodeToJsValue(JsonNode node) {
-        try {
-            return mapper.treeToValue(node, JsValue.class);
+        try (JsonParser jp = node.traverse(mapper)) {
+            return JsParser.DEFAULT.read(jp);
         } catch(Exception e) {
             throw new RuntimeException(e);
         }
@@ -147,59 +360,9 @@ public class Jackson {
 
     private static class JsValueSerializer extends JsonSerializer<JsValue> {
 
-        // Maximum magnitude of BigDecimal to write out as a plain string
-        private static final BigDecimal MaxPlain = new BigDecimal(1e20);
-        // Minimum magnitude of BigDecimal to write out as a plain string
-        private static final BigDecimal MinPlain = new BigDecimal(1e-10);
-
         @Override
         public void serialize(JsValue value, JsonGenerator json, SerializerProvider provider) throws IOException, JsonProcessingException {
-            for (JsNumber number : value.asOpt(JsNumber.class)) {
-                // Workaround  Same behaviour as if JsonGenerator were
-                // configured with WRITE_BIGDECIMAL_AS_PLAIN, but forced as this
-                // configuration is ignored when called from ObjectMapper.valueToTree
-                BigDecimal v = number.value;
-                BigDecimal va = v.abs();
-                boolean shouldWritePlain = va.compareTo(MaxPlain) < 0 && va.compareTo(MinPlain) > 0;
-                BigDecimal stripped = v.stripTrailingZeros();
-                String raw = stripped.toString();
-                if (shouldWritePlain) {
-                    raw = stripped.toPlainString();
-                }
-                if (raw.indexOf('E') < 0 && raw.indexOf('.') < 0) {
-                    json.writeTree(new BigIntegerNode(new BigInteger(raw)));
-                } else {
-                    json.writeTree(new DecimalNode(new BigDecimal(raw)));
-                }
-                // json.writeNumber(number.value);
-            }
-            for (JsString str : value.asOpt(JsString.class)) {
-                json.writeString(str.value);
-            }
-            for (JsBoolean bool : value.asOpt(JsBoolean.class)) {
-                json.writeBoolean(bool.value);
-            }
-            for (JsNull nevermind : value.asOpt(JsNull.class)) {
-                json.writeNull();
-            }
-            for (JsUndefined nevermind : value.asOpt(JsUndefined.class)) {
-                json.writeNull();
-            }
-            for (JsArray array : value.asOpt(JsArray.class)) {
-                json.writeStartArray();
-                for (JsValue val : array.values) {
-                    serialize(val, json, provider);
-                }
-                json.writeEndArray();
-            }
-            for (JsObject obj : value.asOpt(JsObject.class)) {
-                json.writeStartObject();
-                for (Tuple2<String, JsValue> val : obj.values.toList()) {
-                    json.writeFieldName(val._1);
-                    serialize(val._2, json, provider);
-                }
-                json.writeEndObject();
-            }
+            JsValueWriter.write(value, json);
         }
     }
 
@@ -215,7 +378,7 @@ public class Jackson {
 
         @Override
         public boolean isCachable() {
-            return false;
+            return true;
         }
 
         @Override
@@ -225,69 +388,11 @@ public class Jackson {
 
         @Override
         public JsValue deserialize(JsonParser jp, DeserializationContext ctx) throws IOException, JsonProcessingException {
-            if (jp.getCurrentToken() == null) {
-                jp.nextToken();
-            }
-            JsonToken token = jp.getCurrentToken();
-            JsValue value = Syntax.nill();
-            if (token.equals(JsonToken.VALUE_NUMBER_FLOAT) || token.equals(JsonToken.VALUE_NUMBER_INT)) {
-                value = new JsNumber(jp.getDecimalValue());
-            }
-            if (token.equals(JsonToken.VALUE_STRING)) {
-                value = new JsString(jp.getText());
-            }
-            if (token.equals(JsonToken.VALUE_TRUE)) {
-                value = new JsBoolean(true);
-            }
-            if (token.equals(JsonToken.VALUE_FALSE)) {
-                value = new JsBoolean(false);
-            }
-            if (token.equals(JsonToken.VALUE_NULL)) {
-                value = JsNull.JSNULL_INSTANCE;
-            }
-            if (token.equals(JsonToken.VALUE_EMBEDDED_OBJECT)) {
-                jp.nextToken();
-                value = readObject(jp, ctx);
-            }
-            if (token.equals(JsonToken.START_OBJECT)) {
-                jp.nextToken();
-                value = readObject(jp, ctx);
-            }
-            if (token.equals(JsonToken.START_ARRAY)) {
-                jp.nextToken();
-                value = readArray(jp, ctx);
-            }
-            jp.nextToken();
-            if (!clazz.isAssignableFrom(value.getClass())) {
+            JsValue value = JsParser.DEFAULT.read(jp);
+            if (!clazz.isInstance(value)) {
                 throw ctx.mappingException(clazz);
             }
             return value;
         }
-
-        private JsObject readObject(JsonParser jp, DeserializationContext ctx) throws java.io.IOException, JsonParseException {
-            JsObject object = new JsObject();
-            while(jp.getCurrentToken() != null && !jp.getCurrentToken().equals(JsonToken.END_OBJECT)) {
-                JsonToken token = jp.getCurrentToken();
-                if (token.equals(JsonToken.FIELD_NAME)) {
-                    String key = jp.getCurrentName();
-                    jp.nextToken();
-                    JsValue val = deserialize(jp, ctx);
-                    object = object.add(Syntax.$(key, val));
-                }
-                if (!token.equals(JsonToken.FIELD_NAME)) {
-                    jp.nextToken();
-                }
-            }
-            return object;
-        }
-
-        private JsArray readArray(JsonParser jp, DeserializationContext ctx) throws java.io.IOException, JsonParseException {
-            JsArray array = new JsArray();
-            while(jp.getCurrentToken() != null && !jp.getCurrentToken().equals(JsonToken.END_ARRAY)) {
-                JsValue val = deserialize(jp, ctx);
-                array = array.addElement(val);
-            }
-            return array;
-        }
     }
 }
@@ -111,12 +111,30 @@ public class JsArray extends JsValue implements Iterable<JsValue> {
 
     @Override
     String toJsonString() {
-        return "[" + values.map(JsValue::toJsonString).mkString(",") + "]";
+        return JsValueWriter.toJsonString(this);
+    }
+
+    @Override
+    public JsArray serialized() {
+        if (raw() != null) {
+            return this;
+        }
+        byte[] bytes = Jackson.generateBytesFromJsValue(this);
+        return new SerializedJsArray(values, new RawJson(bytes, 0, bytes.length));
     }
 
     @Override
     public String toString() {
-        return "JsArray[" + values.map(JsValue::toJsonString).mkString(", ") + "]";
+        StringBuilder builder = new StringBuilder("JsArray[");
+        boolean first = true;
+        for (JsValue value : values) {
+            if (!first) {
+                builder.append(", ");
+            }
+            first = false;
+            JsValueWriter.append(value, builder);
+        }
+        return builder.append(']').toString();
     }
 
     public int size() {
@@ -136,10 +154,11 @@ public class JsArray extends JsValue implements Iterable<JsValue> {
         if (this == o) {
             return true;
         }
-        if (!(o instanceof JsArray)) {
+        Object other = o instanceof JsValue ? ((JsValue) o).materialized() : o;
+        if (!(other instanceof JsArray)) {
             return false;
         }
-        JsArray jsArray = (JsArray) o;
+        JsArray jsArray = (JsArray) other;
         if (!values.equals(jsArray.values)) {
             return false;
         }
@@ -148,29 +167,7 @@ public class JsArray extends JsValue implements Iterable<JsValue> {
 
     @Override
     public boolean deepEquals(Object o) {
-        if (this == o) {
-            return true;
-        }
-        if (!(o instanceof JsArray)) {
-            return false;
-        }
-        JsArray jsArray = (JsArray) o;
-        for (int i = 0; i < size(); i++) {
-            JsValue v1 = get(i);
-            JsValue v2 = jsArray.get(i);
-            if (v1 == null && v2 == null) {
-                // we're good
-            } else if (v1 != null && v2 == null) {
-                return false;
-            } else if (v1 == null && v2 != null) {
-                return false;
-            } else {
-                if (!v1.deepEquals(v2)) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return deepEquals(this, o);
     }
 
     @Override
@@ -0,0 +1,516 @@
+package org.reactivecouchbase.json;
+
+import org.reactivecouchbase.json.exceptions.JsParseException;
+import org.reactivecouchbase.json.exceptions.JsParseLimitException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+
+// reads UTF-8 bytes straight into JsValues, without a tokenizer in between. Accepts the same
+// documents as the Jackson engine with its default features and builds the same values
+final class JsByteParser {
+
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private final SymbolTable symbols;
+    private final StringCache strings;
+    private final ParseLimits limits;
+    private final byte[] bytes;
+    private final int start;
+    private final int end;
+    private int pos;
+    private char[] chars = new char[64];
+
+    JsByteParser(JsParser engine, byte[] bytes, int offset, int length) {
+        this.symbols = engine.symbolTable();
+        this.strings = engine.stringCache();
+        this.limits = engine.limits();
+        this.bytes = bytes;
+        this.start = offset;
+        this.end = offset + length;
+        this.pos = offset;
+    }
+
+    static JsValue parse(JsParser engine, byte[] bytes, int offset, int length) {
+        return new JsByteParser(engine, bytes, offset, length).readRoot();
+    }
+
+    private JsValue readRoot() {
+        int root = skipToRoot();
+        JsValue value = readValue();
+        checkTrailing(root);
+        return value;
+    }
+
+    // moves to the first byte of the root value, past any byte order mark
+    int skipToRoot() {
+        if (end - pos >= 3 && bytes[pos] == (byte) 0xEF && bytes[pos + 1] == (byte) 0xBB && bytes[pos + 2] == (byte) 0xBF) {
+            pos += 3;
+        }
+        if (!skipWhitespace()) {
+            throw failure("No content to map due to end-of-input");
+        }
+        return pos;
+    }
+
+    // like the Jackson engine, only the token following the root value is checked, a string or
+    // container is only checked to start there
+    void checkTrailing(int root) {
+        if (isNumberStart(bytes[root])) {
+            checkRootSpace();
+        }
+        if (skipWhitespace()) {
+            byte b = bytes[pos];
+            if (isNumberStart(b)) {
+                readNumber();
+                checkRootSpace();
+            } else if (b == 't' || b == 'f' || b == 'n') {
+                pos++;
+                literal(b == 't' ? TRUE : b == 'f' ? FALSE : NULL);
+            } else if (b != '{' && b != '[' && b != '"') {
+                pos++;
+                throw unexpected(b, "expected end-of-input");
+            }
+        }
+    }
+
+    private void checkRootSpace() {
+        if (pos < end && !isWhitespace(bytes[pos])) {
+            byte b = bytes[pos++];
+            throw unexpected(b, "Expected space separating root-level values");
+        }
+    }
+
+    private static boolean isNumberStart(byte b) {
+        return b == '-' || (b >= '0' && b <= '9');
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    // scalars are read straight from the bytes, objects and arrays are filled as JsParser.Containers
+    private JsValue readValue() {
+        ArrayDeque<JsParser.Container> parents = new ArrayDeque<>();
+        JsParser.Container current = null;
+        while (true) {
+            byte b = next();
+            JsValue value;
+            if (b == '{' || b == '[') {
+                if (current != null) {
+                    parents.push(current);
+                }
+                current = new JsParser.Container(b == '{');
+                if (parents.size() + 1 > limits.maxDepth()) {
+                    throw exceeded("depth", limits.maxDepth());
+                }
+                byte c = next();
+                if (c != (current.object ? '}' : ']')) {
+                    pos--;
+                    enter(current);
+                    continue;
+                }
+                value = current.build();
+                current = parents.poll();
+            } else {
+                value = readScalar(b);
+            }
+            // attaches the value, then closes every container ending here
+            while (true) {
+                if (current == null) {
+                    return value;
+                }
+                current.add(value);
+                byte c = next();
+                if (c == ',') {
+                    enter(current);
+                    break;
+                }
+                if (c != (current.object ? '}' : ']')) {
+                    throw unexpected(c, current.object ? "was expecting comma to separate object entries" : "was expecting comma to separate array entries");
+                }
+                value = current.build();
+                current = parents.poll();
+            }
+        }
+    }
+
+    // moves to the next member of the container, reading the field name of an object entry
+    private void enter(JsParser.Container container) {
+        if (container.object) {
+            if (++container.size > limits.maxFieldsPerObject()) {
+                throw exceeded("fields per object", limits.maxFieldsPerObject());
+            }
+            byte b = next();
+            if (b != '"') {
+                throw unexpected(b, "was expecting double-quote to start field name");
+            }
+            container.key = readFieldName();
+            b = next();
+            if (b != ':') {
+                throw unexpected(b, "was expecting a colon to separate field name and value");
+            }
+        } else if (++container.size > limits.maxArrayLength()) {
+            throw exceeded("array length", limits.maxArrayLength());
+        }
+    }
+
+    // reads the field name whose opening quote has just been read
+    String readFieldName() {
+        int length = readChars();
+        return symbols == null ? new String(chars, 0, length) : symbols.canonicalize(chars, 0, length);
+    }
+
+    // reads the scalar value starting at the given position, leaving pos right after it
+    JsValue readScalarAt(int position) {
+        pos = position + 1;
+        return readScalar(bytes[position]);
+    }
+
+    // checks the scalar value starting at the given position like readScalarAt, without building it
+    void skipScalarAt(int position) {
+        pos = position + 1;
+        byte b = bytes[position];
+        switch (b) {
+            case '"':
+                readChars();
+                break;
+            case 't':
+                literal(TRUE);
+                break;
+            case 'f':
+                literal(FALSE);
+                break;
+            case 'n':
+                literal(NULL);
+                break;
+            default:
+                if (!isNumberStart(b)) {
+                    throw unexpected(b, "expected a value");
+                }
+                pos--;
+                skipNumber();
+        }
+    }
+
+    // checks the field name whose opening quote has just been read, without building it
+    void skipFieldName() {
+        readChars();
+    }
+
+    int position() {
+        return pos;
+    }
+
+    void moveTo(int position) {
+        pos = position;
+    }
+
+    private JsValue readScalar(byte b) {
+        switch (b) {
+            case '"':
+                return readString();
+            case 't':
+                literal(TRUE);
+                return new JsBoolean(true);
+            case 'f':
+                literal(FALSE);
+                return new JsBoolean(false);
+            case 'n':
+                literal(NULL);
+                return JsNull.JSNULL_INSTANCE;
+            default:
+                if (isNumberStart(b)) {
+                    pos--;
+                    return readNumber();
+                }
+                throw unexpected(b, "expected a value");
+        }
+    }
+
+    private JsString readString() {
+        // ASCII without escapes is the common case, it is turned into a String without decoding
+        int i = pos;
+        while (i < end) {
+            byte b = bytes[i];
+            if (b == '"' || b == '\\' || b < 0x20) {
+                break;
+            }
+            i++;
+        }
+        if (i < end && bytes[i] == '"') {
+            int length = i - pos;
+            if (length > limits.maxStringLength()) {
+                throw exceeded("string length", limits.maxStringLength());
+            }
+            if (strings != null && strings.accepts(length)) {
+                ensureChars(length);
+                for (int j = 0; j < length; j++) {
+                    chars[j] = (char) bytes[pos + j];
+                }
+                pos = i + 1;
+                return strings.intern(chars, 0, length);
+            }
+            String value = new String(bytes, pos, length, StandardCharsets.ISO_8859_1);
+            pos = i + 1;
+            return new JsString(value);
+        }
+        int length = readChars();
+        if (strings != null && strings.accepts(length)) {
+            return strings.intern(chars, 0, length);
+        }
+        return new JsString(new String(chars, 0, length));
+    }
+
+    // decodes the string starting at pos into chars and returns its length, pos is left after the closing quote
+    private int readChars() {
+        int length = 0;
+        while (true) {
+            if (pos >= end) {
+                throw failure("Unexpected end-of-input: was expecting closing quote for a string value");
+            }
+            int b = bytes[pos++];
+            if (b == '"') {
+                break;
+            }
+            ensureChars(length + 2);
+            if (b == '\\') {
+                chars[length++] = escaped();
+            } else if (b >= 0x20) {
+                chars[length++] = (char) b;
+            } else if (b >= 0) {
+                pos--;
+                throw failure("Illegal unquoted character ((CTRL-CHAR, code " + b + ")): has to be escaped using backslash to be included in string value");
+            } else {
+                int codePoint = decodeMultiByte(b);
+                if (codePoint > 0xFFFF) {
+                    chars[length++] = Character.highSurrogate(codePoint);
+                    chars[length++] = Character.lowSurrogate(codePoint);
+                } else {
+                    chars[length++] = (char) codePoint;
+                }
+            }
+            if (length > limits.maxStringLength()) {
+                throw exceeded("string length", limits.maxStringLength());
+            }
+        }
+        return length;
+    }
+
+    private char escaped() {
+        if (pos >= end) {
+            throw failure("Unexpected end-of-input in character escape sequence");
+        }
+        byte b = bytes[pos++];
+        switch (b) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) b;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                if (end - pos < 4) {
+                    throw failure("Unexpected end-of-input in character escape sequence");
+                }
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(bytes[pos++], 16);
+                    if (digit < 0) {
+                        pos--;
+                        throw unexpected(bytes[pos], "expected a hex-digit for character escape sequence");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                pos--;
+                throw unexpected(b, "Unrecognized character escape");
+        }
+    }
+
+    private int decodeMultiByte(int first) {
+        int needed;
+        int codePoint;
+        if ((first & 0xE0) == 0xC0) {
+            needed = 1;
+            codePoint = first & 0x1F;
+        } else if ((first & 0xF0) == 0xE0) {
+            needed = 2;
+            codePoint = first & 0x0F;
+        } else if ((first & 0xF8) == 0xF0) {
+            needed = 3;
+            codePoint = first & 0x07;
+        } else {
+            pos--;
+            throw failure("Invalid UTF-8 start byte 0x" + Integer.toHexString(first & 0xFF));
+        }
+        for (int i = 0; i < needed; i++) {
+            if (pos >= end) {
+                throw failure("Unexpected end-of-input in a multi-byte UTF-8 character");
+            }
+            int b = bytes[pos++];
+            if ((b & 0xC0) != 0x80) {
+                pos--;
+                throw failure("Invalid UTF-8 middle byte 0x" + Integer.toHexString(b & 0xFF));
+            }
+            codePoint = (codePoint << 6) | (b & 0x3F);
+        }
+        return codePoint;
+    }
+
+    private JsNumber readNumber() {
+        int begin = pos;
+        boolean decimal = skipNumber();
+        boolean negative = bytes[begin] == '-';
+        int length = pos - begin;
+        // up to 18 digits always fit in a long, which avoids parsing the text again
+        if (!decimal && (negative ? length - 1 : length) <= 18) {
+            long integral = 0;
+            for (int i = negative ? begin + 1 : begin; i < pos; i++) {
+                integral = integral * 10 + (bytes[i] - '0');
+            }
+            return new JsNumber(BigDecimal.valueOf(negative ? -integral : integral));
+        }
+        ensureChars(length);
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) bytes[begin + i];
+        }
+        return new JsNumber(new BigDecimal(chars, 0, length));
+    }
+
+    // moves past the number at pos, checking it, and tells whether it has a fraction or an exponent
+    private boolean skipNumber() {
+        int begin = pos;
+        if (bytes[pos] == '-') {
+            pos++;
+        }
+        int digitsStart = pos;
+        while (pos < end && bytes[pos] >= '0' && bytes[pos] <= '9') {
+            pos++;
+        }
+        int digits = pos - digitsStart;
+        if (digits == 0) {
+            throw pos < end ? unexpected(bytes[pos], "expected digit (0-9) to follow minus sign, for valid numeric value") : failure("Unexpected end-of-input in a number");
+        }
+        if (digits > 1 && bytes[digitsStart] == '0') {
+            throw failure("Invalid numeric value: Leading zeroes not allowed");
+        }
+        boolean decimal = false;
+        if (pos < end && bytes[pos] == '.') {
+            decimal = true;
+            pos++;
+            digits(" Decimal point not followed by a digit");
+        }
+        if (pos < end && (bytes[pos] == 'e' || bytes[pos] == 'E')) {
+            decimal = true;
+            pos++;
+            if (pos < end && (bytes[pos] == '+' || bytes[pos] == '-')) {
+                pos++;
+            }
+            digits(" Exponent indicator not followed by a digit");
+        }
+        if (pos - begin > limits.maxNumberLength()) {
+            pos = begin;
+            throw exceeded("number length", limits.maxNumberLength());
+        }
+        return decimal;
+    }
+
+    private void digits(String error) {
+        int first = pos;
+        while (pos < end && bytes[pos] >= '0' && bytes[pos] <= '9') {
+            pos++;
+        }
+        if (pos == first) {
+            throw failure("Unexpected character in a number:" + error);
+        }
+    }
+
+    private void literal(byte[] expected) {
+        int first = pos - 1;
+        for (int i = 1; i < expected.length; i++) {
+            if (pos >= end || bytes[pos] != expected[i]) {
+                pos = first;
+                throw failure("Unrecognized token: was expecting ('true', 'false' or 'null')");
+            }
+            pos++;
+        }
+        if (pos < end && (Character.isLetterOrDigit(bytes[pos]) || bytes[pos] == '_')) {
+            pos = first;
+            throw failure("Unrecognized token: was expecting ('true', 'false' or 'null')");
+        }
+    }
+
+    // returns the next non whitespace byte and moves past it
+    private byte next() {
+        if (!skipWhitespace()) {
+            throw failure("Unexpected end-of-input");
+        }
+        return bytes[pos++];
+    }
+
+    boolean skipWhitespace() {
+        while (pos < end) {
+            if (!isWhitespace(bytes[pos])) {
+                return true;
+            }
+            pos++;
+        }
+        return false;
+    }
+
+    private void ensureChars(int length) {
+        if (length > chars.length) {
+            char[] larger = new char[Math.max(length, chars.length * 2)];
+            System.arraycopy(chars, 0, larger, 0, chars.length);
+            chars = larger;
+        }
+    }
+
+    JsParseException unexpected(int b, String expectation) {
+        String shown = b >= 0x20 && b < 0x7F ? "'" + (char) b + "' (code " + b + ")" : "(code " + (b & 0xFF) + ")";
+        return failure("Unexpected character (" + shown + "): " + expectation);
+    }
+
+    JsParseException failure(String message) {
+        long line = lineAt(pos);
+        long column = columnAt(pos);
+        return new JsParseException(message + " at line " + line + " column " + column, line, column);
+    }
+
+    JsParseLimitException exceeded(String limit, long max) {
+        return new JsParseLimitException(limit, max, lineAt(pos), columnAt(pos));
+    }
+
+    private long lineAt(int position) {
+        long line = 1;
+        for (int i = start; i < position && i < end; i++) {
+            if (bytes[i] == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    private long columnAt(int position) {
+        int i = Math.min(position, end);
+        int column = 1;
+        while (i > start && bytes[i - 1] != '\n') {
+            i--;
+            column++;
+        }
+        return column;
+    }
+}
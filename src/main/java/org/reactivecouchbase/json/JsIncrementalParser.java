@@ -0,0 +1,262 @@
+package org.reactivecouchbase.json;
+
+import org.reactivecouchbase.json.exceptions.JsParseException;
+import org.reactivecouchbase.json.exceptions.JsParseLimitException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+// a push parser fed with chunks of UTF-8 bytes as they arrive. A light scanner finds where values end,
+// each completed value is parsed and handed to the callback right away. Only the bytes of the value
+// being received are kept, nothing ever blocks waiting for input
+public class JsIncrementalParser {
+
+    private final JsParser engine;
+    private final Consumer<JsValue> callback;
+    // 0 emits top level values, 1 emits the elements of top level arrays
+    private final int emitDepth;
+
+    private byte[] buffer = new byte[8192];
+    private int limit = 0;
+    private int scanned = 0;
+    private long consumed = 0;
+
+    private int depth = 0;
+    private int valueStart = -1;
+    private boolean inString = false;
+    private boolean escaped = false;
+    private boolean inScalar = false;
+    private boolean ended = false;
+    private boolean failed = false;
+    // in element mode, what the top level array accepts next: the engine only ever sees the elements
+    private int expected = VALUE_OR_END;
+
+    private static final int VALUE_OR_END = 0;
+    private static final int VALUE = 1;
+    private static final int SEPARATOR_OR_END = 2;
+
+    JsIncrementalParser(JsParser engine, Consumer<JsValue> callback, boolean elements) {
+        if (callback == null) {
+            throw new IllegalArgumentException("Callback can't be null !");
+        }
+        this.engine = engine;
+        this.callback = callback;
+        this.emitDepth = elements ? 1 : 0;
+    }
+
+    public JsIncrementalParser feed(byte[] bytes) {
+        return feed(bytes, 0, bytes.length);
+    }
+
+    public JsIncrementalParser feed(byte[] bytes, int offset, int length) {
+        ensureOpen();
+        reserve(length);
+        System.arraycopy(bytes, offset, buffer, limit, length);
+        limit += length;
+        scanOrFail();
+        return this;
+    }
+
+    // consumes the remaining bytes of the buffer
+    public JsIncrementalParser feed(ByteBuffer bytes) {
+        ensureOpen();
+        int length = bytes.remaining();
+        reserve(length);
+        bytes.get(buffer, limit, length);
+        limit += length;
+        scanOrFail();
+        return this;
+    }
+
+    public void endOfInput() {
+        ensureOpen();
+        ended = true;
+        try {
+            if (inScalar) {
+                emit(limit);
+            }
+            if (depth != 0 || inString || valueStart >= 0) {
+                throw failure("Unexpected end of input", limit);
+            }
+        } catch (RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    public boolean isIdle() {
+        return depth == 0 && valueStart < 0;
+    }
+
+    // the scanner state is unknown once something went wrong, so nothing more is accepted
+    private void scanOrFail() {
+        try {
+            scan();
+        } catch (RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    private void scan() {
+        ParseLimits limits = engine.limits();
+        for (int i = scanned; i < limit; i++) {
+            byte b = buffer[i];
+            // limits are checked while the value is received, not once it is complete and fully buffered
+            if (valueStart >= 0 && i - valueStart >= limits.maxTotalBytes()) {
+                throw new JsParseLimitException("total bytes", limits.maxTotalBytes(), -1, -1);
+            }
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inString = false;
+                    if (depth == emitDepth && valueStart >= 0) {
+                        emit(i + 1);
+                    }
+                }
+                continue;
+            }
+            if (inScalar) {
+                if (!isDelimiter(b)) {
+                    continue;
+                }
+                emit(i);
+            }
+            if (emitDepth == 1 && depth == 1 && !isWhitespace(b)) {
+                checkSeparator(b, i);
+            }
+            switch (b) {
+                case ' ':
+                case '\t':
+                case '\r':
+                case '\n':
+                    break;
+                case ',':
+                    if (depth == 0) {
+                        throw failure("Unexpected ','", i);
+                    }
+                    break;
+                case '{':
+                case '[':
+                    if (depth < emitDepth && b == '{') {
+                        throw failure("Expected an array", i);
+                    }
+                    if (depth < emitDepth) {
+                        expected = VALUE_OR_END;
+                    }
+                    if (depth == emitDepth) {
+                        valueStart = i;
+                    }
+                    depth++;
+                    if (depth - emitDepth > limits.maxDepth()) {
+                        throw new JsParseLimitException("depth", limits.maxDepth(), -1, -1);
+                    }
+                    break;
+                case '}':
+                case ']':
+                    if (depth == 0) {
+                        throw failure("Unexpected '" + (char) b + "'", i);
+                    }
+                    depth--;
+                    if (depth == emitDepth && valueStart >= 0) {
+                        emit(i + 1);
+                    }
+                    break;
+                case '"':
+                    inString = true;
+                    if (depth == emitDepth) {
+                        valueStart = i;
+                    }
+                    break;
+                default:
+                    if (depth < emitDepth) {
+                        throw failure("Expected an array", i);
+                    }
+                    if (depth == emitDepth) {
+                        valueStart = i;
+                        inScalar = true;
+                    }
+            }
+        }
+        scanned = limit;
+        if (valueStart < 0) {
+            consumed += limit;
+            limit = 0;
+            scanned = 0;
+        }
+    }
+
+    private void emit(int end) {
+        int start = valueStart;
+        valueStart = -1;
+        inScalar = false;
+        JsValue value;
+        try {
+            value = engine.parse(buffer, start, end - start);
+        } catch (JsParseLimitException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new JsParseException("Invalid json value at byte " + (consumed + start), -1, -1, e.getCause() == null ? e : e.getCause());
+        }
+        callback.accept(value);
+    }
+
+    // keeps the bytes of the value in progress at the front of the buffer and makes room for more
+    private void reserve(int length) {
+        if (valueStart > 0) {
+            System.arraycopy(buffer, valueStart, buffer, 0, limit - valueStart);
+            consumed += valueStart;
+            limit -= valueStart;
+            scanned -= valueStart;
+            valueStart = 0;
+        }
+        if (limit + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, limit + length));
+        }
+    }
+
+    private void ensureOpen() {
+        if (failed) {
+            throw new IllegalStateException("Parser already failed on previous input");
+        }
+        if (ended) {
+            throw new IllegalStateException("End of input already reached");
+        }
+    }
+
+    private void checkSeparator(byte b, int position) {
+        if (b == ',') {
+            if (expected != SEPARATOR_OR_END) {
+                throw failure("Unexpected ','", position);
+            }
+            expected = VALUE;
+        } else if (b == ']') {
+            if (expected == VALUE) {
+                throw failure("Unexpected ']'", position);
+            }
+        } else if (b == '}' || b == ':') {
+            throw failure("Unexpected '" + (char) b + "'", position);
+        } else {
+            if (expected == SEPARATOR_OR_END) {
+                throw failure("Expected ',' or ']'", position);
+            }
+            expected = SEPARATOR_OR_END;
+        }
+    }
+
+    private JsParseException failure(String message, int position) {
+        return new JsParseException(message + " at byte " + (consumed + position), -1, -1);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == ',' || b == ']' || b == '}' || b == '{' || b == '[' || b == '"';
+    }
+}
@@ -82,7 +82,9 @@ public class JsNumber extends JsValue implements java.lang.Comparable<JsNumber>
 
     @Override
     String toJsonString() {
-        return value.toPlainString();
+        StringBuilder builder = new StringBuilder();
+        JsValueWriter.appendNumber(value, builder);
+        return builder.toString();
     }
 
     @Override
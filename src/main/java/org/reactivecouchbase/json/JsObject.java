@@ -10,6 +10,8 @@ import org.reactivecouchbase.json.mapping.Reader;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.function.Function;
 
@@ -51,19 +53,49 @@ public class JsObject extends JsValue implements Iterable<Tuple2<String, JsValue
         return values.toList().iterator();
     }
 
+    // one frame per level, a field holding an object on both sides pushes the frame merging them
     public JsObject deepMerge(JsObject with) {
         if (with == null) {
             throw new IllegalArgumentException("Value can't be null !");
         }
-        Map<String, JsValue> newValues = with.values;
-        for (Tuple2<String, JsValue> entry : values.toList()) {
-            if (with.values.containsKey(entry._1()) && entry._2().is(JsObject.class)) {
-                newValues = newValues.put(entry._1(), entry._2().as(JsObject.class).deepMerge(with.values.get(entry._1()).get().as(JsObject.class)));
+        ArrayDeque<MergeFrame> frames = new ArrayDeque<>();
+        frames.push(new MergeFrame(this, with));
+        JsObject merged = null;
+        while (true) {
+            MergeFrame frame = frames.peek();
+            if (merged != null) {
+                frame.values = frame.values.put(frame.key, merged);
+                merged = null;
+            }
+            if (!frame.entries.hasNext()) {
+                frames.pop();
+                merged = new JsObject(frame.values);
+                if (frames.isEmpty()) {
+                    return merged;
+                }
+                continue;
+            }
+            Tuple2<String, JsValue> entry = frame.entries.next();
+            if (frame.with.values.containsKey(entry._1()) && entry._2().materialized() instanceof JsObject) {
+                frame.key = entry._1();
+                frames.push(new MergeFrame(entry._2().as(JsObject.class), frame.with.values.get(entry._1()).get().as(JsObject.class)));
             } else {
-                newValues = newValues.put(entry._1(), entry._2());
+                frame.values = frame.values.put(entry._1(), entry._2());
             }
         }
-        return new JsObject(newValues);
+    }
+
+    private static class MergeFrame {
+        private final JsObject with;
+        private final Iterator<Tuple2<String, JsValue>> entries;
+        private Map<String, JsValue> values;
+        private String key;
+
+        private MergeFrame(JsObject self, JsObject with) {
+            this.with = with;
+            this.entries = self.values.iterator();
+            this.values = with.values;
+        }
     }
 
     public Set<String> fieldsSet() {
@@ -157,34 +189,54 @@ public class JsObject extends JsValue implements Iterable<Tuple2<String, JsValue
         if (fieldName == null) {
             return Array.empty();
         }
-        return values.toList().flatMap(tuple -> {
-            String key = tuple._1;
-            JsValue value = tuple._2;
-            if (key.equals(fieldName)) {
-                return Array.of(value);
+        // depth first, in field order, without descending into matched values
+        java.util.List<JsValue> found = new ArrayList<>();
+        ArrayDeque<Iterator<Tuple2<String, JsValue>>> stack = new ArrayDeque<>();
+        stack.push(values.iterator());
+        while (!stack.isEmpty()) {
+            Iterator<Tuple2<String, JsValue>> entries = stack.peek();
+            if (!entries.hasNext()) {
+                stack.pop();
+                continue;
             }
-            for (JsObject obj : value.asOpt(JsObject.class)) {
-                return obj.fields(fieldName);
+            Tuple2<String, JsValue> tuple = entries.next();
+            if (tuple._1.equals(fieldName)) {
+                found.add(tuple._2);
+            } else if (tuple._2.materialized() instanceof JsObject) {
+                stack.push(((JsObject) tuple._2.materialized()).values.iterator());
             }
-            for (JsObject obj : value.asOpt(JsPair.class)) {
-                return obj.fields(fieldName);
-            }
-            return Array.empty();
-        });
+        }
+        return List.ofAll(found);
     }
 
     @Override
     String toJsonString() {
-        return "{" + toJsonPairString() + "}";
+        return JsValueWriter.toJsonString(this);
     }
 
     @Override
-    public String toString() {
-        return "JsObject(" + toJsonPairString() + ")";
+    public JsObject serialized() {
+        if (raw() != null) {
+            return this;
+        }
+        byte[] bytes = Jackson.generateBytesFromJsValue(this);
+        return new SerializedJsObject(values, new RawJson(bytes, 0, bytes.length));
     }
 
-    private String toJsonPairString() {
-        return values.toList().map(tuple -> "\"" + tuple._1 + "\":" + tuple._2.toJsonString()).mkString(",");
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("JsObject(");
+        boolean first = true;
+        for (Tuple2<String, JsValue> tuple : values) {
+            if (!first) {
+                builder.append(',');
+            }
+            first = false;
+            JsValueWriter.appendString(tuple._1, builder);
+            builder.append(':');
+            JsValueWriter.append(tuple._2, builder);
+        }
+        return builder.append(')').toString();
     }
 
     @Override
@@ -192,10 +244,11 @@ public class JsObject extends JsValue implements Iterable<Tuple2<String, JsValue
         if (this == o) {
             return true;
         }
-        if (!(o instanceof JsObject)) {
+        Object other = o instanceof JsValue ? ((JsValue) o).materialized() : o;
+        if (!(other instanceof JsObject)) {
             return false;
         }
-        JsObject object = (JsObject) o;
+        JsObject object = (JsObject) other;
         if (!values.equals(object.values)) {
             return false;
         }
@@ -204,20 +257,7 @@ public class JsObject extends JsValue implements Iterable<Tuple2<String, JsValue
 
     @Override
     public boolean deepEquals(Object o) {
-        if (this == o) {
-            return true;
-        }
-        if (!(o instanceof JsObject)) {
-            return false;
-        }
-        JsObject object = (JsObject) o;
-        for (Tuple2<String, JsValue> value : values.toList()) {
-            JsValue field = object.field(value._1());
-            if (!field.deepEquals(value._2())) {
-                return false;
-            }
-        }
-        return true;
+        return deepEquals(this, o);
     }
 
     @Override
@@ -0,0 +1,879 @@
+package org.reactivecouchbase.json;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import io.vavr.collection.Array;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.Iterator;
+import io.vavr.collection.Map;
+import org.reactivecouchbase.json.exceptions.JsException;
+import org.reactivecouchbase.json.exceptions.JsParseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class JsParser {
+
+    public static final JsParser DEFAULT = new JsParser();
+
+    // how whole documents are read by the parse methods, the other ways of parsing always go through Jackson
+    public enum Engine {
+        // Jackson's streaming parser, streams and files are read through a buffer, files being memory mapped
+        JACKSON,
+        // a parser reading UTF-8 bytes straight into JsValues. It works on a byte array, so a stream, a file
+        // or a direct buffer is first copied whole into the heap
+        NATIVE,
+        // NATIVE scalars over an index of the structural characters built 8 bytes at a time, unwanted
+        // containers of a projection are skipped through the index without being read
+        STRUCTURAL
+    }
+
+    private final SymbolTable symbols;
+    private final StringCache strings;
+    private final ParseLimits limits;
+    private final Engine engine;
+
+    // the default engine can be changed with -Dorg.reactivecouchbase.json.engine=NATIVE (or STRUCTURAL),
+    // any other value silently falls back to JACKSON
+    public JsParser() {
+        this(null, null, ParseLimits.NONE, defaultEngine());
+    }
+
+    // an unknown engine name must not prevent the class from loading, Jackson is used instead
+    private static Engine defaultEngine() {
+        String name = System.getProperty("org.reactivecouchbase.json.engine", Engine.JACKSON.name());
+        try {
+            return Engine.valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return Engine.JACKSON;
+        }
+    }
+
+    private JsParser(SymbolTable symbols, StringCache strings, ParseLimits limits, Engine engine) {
+        this.symbols = symbols;
+        this.strings = strings;
+        this.limits = limits;
+        this.engine = engine;
+    }
+
+    // field names are canonicalized through the given table (SymbolTable.shared() for instance), null (the default) disables it
+    public JsParser withSymbolTable(SymbolTable symbols) {
+        return new JsParser(symbols, strings, limits, engine);
+    }
+
+    // short string values are shared through the given cache, null (the default) disables it
+    public JsParser withStringCache(StringCache strings) {
+        return new JsParser(symbols, strings, limits, engine);
+    }
+
+    // any input crossing one of the limits fails with a JsParseLimitException as soon as it is detected
+    public JsParser withLimits(ParseLimits limits) {
+        if (limits == null) {
+            throw new IllegalArgumentException("Limits can't be null !");
+        }
+        return new JsParser(symbols, strings, limits, engine);
+    }
+
+    public JsParser withEngine(Engine engine) {
+        if (engine == null) {
+            throw new IllegalArgumentException("Engine can't be null !");
+        }
+        return new JsParser(symbols, strings, limits, engine);
+    }
+
+    public SymbolTable symbolTable() {
+        return symbols;
+    }
+
+    public StringCache stringCache() {
+        return strings;
+    }
+
+    public ParseLimits limits() {
+        return limits;
+    }
+
+    public Engine engine() {
+        return engine;
+    }
+
+    public JsValue parse(String json) {
+        if (engine != Engine.JACKSON) {
+            limits.checkTotal(json.length());
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            return parseBytes(bytes, 0, bytes.length);
+        }
+        return parseAndClose(parser(json));
+    }
+
+    public JsValue parse(byte[] json) {
+        return parse(json, 0, json.length);
+    }
+
+    public JsValue parse(byte[] json, int offset, int length) {
+        if (engine != Engine.JACKSON) {
+            limits.checkTotal(length);
+            return parseBytes(json, offset, length);
+        }
+        return parseAndClose(parser(json, offset, length));
+    }
+
+    public JsValue parse(InputStream json) {
+        if (engine != Engine.JACKSON) {
+            byte[] bytes = readFully(limits.limit(json));
+            return parseBytes(bytes, 0, bytes.length);
+        }
+        return parseAndClose(parser(json));
+    }
+
+    public JsValue parse(ByteBuffer json) {
+        if (engine != Engine.JACKSON) {
+            limits.checkTotal(json.remaining());
+            if (json.hasArray()) {
+                return parseBytes(json.array(), json.arrayOffset() + json.position(), json.remaining());
+            }
+            byte[] bytes = new byte[json.remaining()];
+            json.duplicate().get(bytes);
+            return parseBytes(bytes, 0, bytes.length);
+        }
+        return parseAndClose(parser(json));
+    }
+
+    public JsValue parse(Path json) {
+        if (engine != Engine.JACKSON) {
+            checkTotal(json);
+            try {
+                byte[] bytes = Files.readAllBytes(json);
+                return parseBytes(bytes, 0, bytes.length);
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+        return parseAndClose(parser(json));
+    }
+
+    private JsValue parseBytes(byte[] json, int offset, int length) {
+        if (engine == Engine.STRUCTURAL) {
+            return JsStructuralParser.parse(this, json, offset, length);
+        }
+        return JsByteParser.parse(this, json, offset, length);
+    }
+
+    private static byte[] readFully(InputStream in) {
+        try (InputStream input = in) {
+            byte[] buffer = new byte[8192];
+            int length = 0;
+            for (int read = input.read(buffer); read >= 0; read = input.read(buffer, length, buffer.length - length)) {
+                length += read;
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+            return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    // one parser reads the successive root values, so blank lines and any whitespace between records are fine
+    public Iterator<JsValue> parseLines(InputStream json) {
+        return new LinesIterator(this, parser(json));
+    }
+
+    public Iterator<JsValue> parseLines(Path json) {
+        return new LinesIterator(this, parser(json));
+    }
+
+    public Iterator<JsValue> parseLines(ByteBuffer json) {
+        return new LinesIterator(this, parser(json));
+    }
+
+    // the file is cut on newlines into one mapped chunk per unit of parallelism, each chunk being read
+    // by its own parser. The stream runs on the pool calling its terminal operation (the common pool
+    // by default), call it from a dedicated ForkJoinPool to bound the number of threads
+    public Stream<JsValue> parseLinesParallel(Path json, int parallelism, boolean ordered) {
+        checkTotal(json);
+        try {
+            Stream<JsValue> values = StreamSupport.stream(LinesSpliterator.of(this, json, parallelism), true);
+            return ordered ? values : values.unordered();
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    public void parse(String json, JsonHandler handler) {
+        handleAndClose(parser(json), handler);
+    }
+
+    public void parse(byte[] json, JsonHandler handler) {
+        handleAndClose(parser(json), handler);
+    }
+
+    public void parse(InputStream json, JsonHandler handler) {
+        handleAndClose(parser(json), handler);
+    }
+
+    public void parse(Path json, JsonHandler handler) {
+        handleAndClose(parser(json), handler);
+    }
+
+    private void handleAndClose(JsonParser parser, JsonHandler handler) {
+        try (JsonParser jp = parser) {
+            read(jp, handler);
+            jp.nextToken();
+        } catch (JsException e) {
+            throw e;
+        } catch (JsonProcessingException e) {
+            throw parseFailure(parser, e);
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    // same contract as read(JsonParser) but the value is pushed to the handler instead of being built
+    public void read(JsonParser jp, JsonHandler handler) throws IOException {
+        JsonToken token = jp.getCurrentToken();
+        if (token == null) {
+            token = jp.nextToken();
+        }
+        if (token == null) {
+            throw new JsonParseException(jp, "No content to map due to end-of-input");
+        }
+        int depth = 0;
+        while (true) {
+            switch (token) {
+                case START_OBJECT:
+                    checkElement(jp, jp.getParsingContext().getParent());
+                    limits.checkDepth(jp, ++depth);
+                    handler.startObject();
+                    break;
+                case END_OBJECT:
+                    handler.endObject();
+                    depth--;
+                    break;
+                case START_ARRAY:
+                    checkElement(jp, jp.getParsingContext().getParent());
+                    limits.checkDepth(jp, ++depth);
+                    handler.startArray();
+                    break;
+                case END_ARRAY:
+                    handler.endArray();
+                    depth--;
+                    break;
+                case FIELD_NAME:
+                    limits.checkFields(jp, jp.getParsingContext().getCurrentIndex() + 1);
+                    handler.field(fieldName(jp));
+                    break;
+                case VALUE_STRING:
+                    checkElement(jp, jp.getParsingContext());
+                    handler.value(readString(jp));
+                    break;
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    checkElement(jp, jp.getParsingContext());
+                    handler.value(readNumber(jp));
+                    break;
+                case VALUE_TRUE:
+                    checkElement(jp, jp.getParsingContext());
+                    handler.value(new JsBoolean(true));
+                    break;
+                case VALUE_FALSE:
+                    checkElement(jp, jp.getParsingContext());
+                    handler.value(new JsBoolean(false));
+                    break;
+                case VALUE_NULL:
+                    checkElement(jp, jp.getParsingContext());
+                    handler.value(JsNull.JSNULL_INSTANCE);
+                    break;
+                default:
+                    throw new JsonParseException(jp, "Unexpected token " + token);
+            }
+            if (depth == 0) {
+                return;
+            }
+            token = nextValueToken(jp);
+        }
+    }
+
+    // nothing is built in handler mode, so array lengths are taken from the parser context
+    private void checkElement(JsonParser jp, JsonStreamContext context) {
+        if (context != null && context.inArray()) {
+            limits.checkArray(jp, context.getCurrentIndex() + 1);
+        }
+    }
+
+    // only the given querySelector paths are built, everything else is skipped at token level
+    public JsValue parse(String json, String... paths) {
+        if (engine == Engine.STRUCTURAL) {
+            limits.checkTotal(json.length());
+            return parse(json.getBytes(StandardCharsets.UTF_8), paths);
+        }
+        return projectAndClose(parser(json), paths);
+    }
+
+    public JsValue parse(byte[] json, String... paths) {
+        if (engine == Engine.STRUCTURAL) {
+            limits.checkTotal(json.length);
+            return JsStructuralParser.project(this, json, 0, json.length, paths);
+        }
+        return projectAndClose(parser(json), paths);
+    }
+
+    public JsValue parse(InputStream json, String... paths) {
+        if (engine == Engine.STRUCTURAL) {
+            return parse(readFully(limits.limit(json)), paths);
+        }
+        return projectAndClose(parser(json), paths);
+    }
+
+    public JsValue parse(Path json, String... paths) {
+        if (engine == Engine.STRUCTURAL) {
+            checkTotal(json);
+            try {
+                return parse(Files.readAllBytes(json), paths);
+            } catch (IOException e) {
+                throw Throwables.propagate(e);
+            }
+        }
+        return projectAndClose(parser(json), paths);
+    }
+
+    private JsValue projectAndClose(JsonParser parser, String... paths) {
+        List<JsPath> candidates = new ArrayList<>();
+        for (String path : paths) {
+            candidates.add(JsPath.parse(path));
+        }
+        try (JsonParser jp = parser) {
+            if (candidates.isEmpty()) {
+                return readRoot(jp);
+            }
+            JsonToken token = jp.nextToken();
+            if (token == null) {
+                throw new JsonParseException(jp, "No content to map due to end-of-input");
+            }
+            JsValue value = project(jp, token, 0, candidates);
+            // moves one token past the root like readRoot, so trailing garbage is reported
+            jp.nextToken();
+            return value == null ? JsUndefined.JSUNDEFINED_INSTANCE : value;
+        } catch (JsException e) {
+            throw e;
+        } catch (JsonProcessingException e) {
+            throw parseFailure(parser, e);
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    // returns null when nothing under the current value is wanted
+    private JsValue project(JsonParser jp, JsonToken token, int depth, List<JsPath> candidates) throws IOException {
+        for (JsPath candidate : candidates) {
+            if (candidate.length() == depth) {
+                return readValue(jp, token, depth);
+            }
+        }
+        if (token == JsonToken.START_OBJECT) {
+            limits.checkDepth(jp, depth + 1);
+            Map<String, JsValue> values = HashMap.empty();
+            int fields = 0;
+            for (JsonToken t = jp.nextToken(); t == JsonToken.FIELD_NAME; t = jp.nextToken()) {
+                limits.checkFields(jp, ++fields);
+                String key = fieldName(jp);
+                JsonToken valueToken = nextValueToken(jp);
+                List<JsPath> next = new ArrayList<>();
+                for (JsPath candidate : candidates) {
+                    if (candidate.matchesField(depth, key)) {
+                        next.add(candidate);
+                    }
+                }
+                JsValue value = next.isEmpty() ? null : project(jp, valueToken, depth + 1, next);
+                if (value == null) {
+                    jp.skipChildren();
+                } else {
+                    values = values.put(key, value);
+                }
+            }
+            return new JsObject(values);
+        }
+        if (token == JsonToken.START_ARRAY) {
+            // skipped elements are kept as nulls up to the last wanted one, so indexes stay valid
+            limits.checkDepth(jp, depth + 1);
+            List<JsValue> values = new ArrayList<>();
+            int kept = 0;
+            int index = 0;
+            for (JsonToken t = nextValueToken(jp); t != JsonToken.END_ARRAY; t = nextValueToken(jp)) {
+                limits.checkArray(jp, index + 1);
+                List<JsPath> next = new ArrayList<>();
+                for (JsPath candidate : candidates) {
+                    if (candidate.matchesIndex(depth, index)) {
+                        next.add(candidate);
+                    }
+                }
+                JsValue value = next.isEmpty() ? null : project(jp, t, depth + 1, next);
+                if (value == null) {
+                    jp.skipChildren();
+                    values.add(JsNull.JSNULL_INSTANCE);
+                } else {
+                    values.add(value);
+                    kept = index + 1;
+                }
+                index++;
+            }
+            return new JsArray(Array.ofAll(values.subList(0, kept)));
+        }
+        return null;
+    }
+
+    // containers are returned as JsRaw views over the bytes (see raw), other values are parsed
+    public JsValue parseLazy(byte[] json, int offset, int length) {
+        return parseLazy(json, offset, length, null);
+    }
+
+    private JsValue parseLazy(byte[] json, int offset, int length, String source) {
+        int start = offset;
+        while (start < offset + length && isWhitespace(json[start])) {
+            start++;
+        }
+        if (start < offset + length && (json[start] == '{' || json[start] == '[')) {
+            return raw(json, offset, length, source);
+        }
+        return parse(json, offset, length);
+    }
+
+    public JsValue parseLazy(byte[] json) {
+        return parseLazy(json, 0, json.length);
+    }
+
+    public JsValue parseLazy(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return parseLazy(bytes, 0, bytes.length, json);
+    }
+
+    // any json value kept as UTF-8 bytes, checked once at token level. It is written verbatim and is only
+    // indexed on first access, one level at a time, nested containers being JsRaw views too
+    public JsRaw raw(byte[] json, int offset, int length) {
+        return raw(json, offset, length, null);
+    }
+
+    public JsRaw raw(byte[] json) {
+        return raw(json, 0, json.length);
+    }
+
+    public JsRaw raw(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return raw(bytes, 0, bytes.length, json);
+    }
+
+    private JsRaw raw(byte[] json, int offset, int length, String source) {
+        limits.checkTotal(length);
+        int start = offset;
+        int end = offset + length;
+        while (start < end && isWhitespace(json[start])) {
+            start++;
+        }
+        while (end > start && isWhitespace(json[end - 1])) {
+            end--;
+        }
+        validate(json, start, end - start);
+        // the bytes encoding a source String are ours, a caller's array is copied so it can be reused.
+        // The source text is only reused when no surrounding whitespace was trimmed
+        if (source != null) {
+            return new JsRaw(this, new RawJson(json, start, end - start, start == offset && end == offset + length ? source : null));
+        }
+        return new JsRaw(this, new RawJson(Arrays.copyOfRange(json, start, end), 0, end - start));
+    }
+
+    // the bytes of raw values are written verbatim, so the whole document must be valid json
+    private void validate(byte[] json, int offset, int length) {
+        JsonParser parser = Jackson.jsonParser(json, offset, length);
+        try (JsonParser jp = parser) {
+            int depth = 0;
+            do {
+                JsonToken token = nextValueToken(jp);
+                if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                    limits.checkDepth(jp, ++depth);
+                } else if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+                    depth--;
+                }
+            } while (depth > 0);
+            if (jp.nextToken() != null) {
+                throw new JsonParseException(jp, "Unexpected content after the root value");
+            }
+        } catch (JsException e) {
+            throw e;
+        } catch (JsonProcessingException e) {
+            throw parseFailure(parser, e);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    // reads the value of already validated bytes, nested containers stay raw
+    JsValue index(RawJson raw) {
+        byte first = raw.bytes[raw.offset];
+        if (first != '{' && first != '[') {
+            return parse(raw.bytes, raw.offset, raw.length);
+        }
+        try (JsonParser jp = Jackson.jsonParser(raw.bytes, raw.offset, raw.length)) {
+            jp.nextToken();
+            if (first == '{') {
+                Map<String, JsValue> values = HashMap.empty();
+                for (JsonToken token = jp.nextToken(); token == JsonToken.FIELD_NAME; token = jp.nextToken()) {
+                    limits.checkFields(jp, jp.getParsingContext().getCurrentIndex() + 1);
+                    String key = fieldName(jp);
+                    values = values.put(key, readRaw(jp, raw, nextValueToken(jp)));
+                }
+                return new JsObject(values);
+            }
+            List<JsValue> values = new ArrayList<>();
+            for (JsonToken token = nextValueToken(jp); token != JsonToken.END_ARRAY; token = nextValueToken(jp)) {
+                limits.checkArray(jp, values.size() + 1);
+                values.add(readRaw(jp, raw, token));
+            }
+            return new JsArray(Array.ofAll(values));
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    // nested containers are skipped at token level, only their bounds are kept
+    private JsValue readRaw(JsonParser jp, RawJson parent, JsonToken token) throws IOException {
+        if (token != JsonToken.START_OBJECT && token != JsonToken.START_ARRAY) {
+            return readValue(jp, token, 0);
+        }
+        int start = (int) jp.getTokenLocation().getByteOffset();
+        jp.skipChildren();
+        int end = (int) jp.getCurrentLocation().getByteOffset();
+        return new JsRaw(this, new RawJson(parent.bytes, parent.offset + start, end - start));
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    // emits every top level value as soon as its last byte has been fed
+    public JsIncrementalParser incremental(Consumer<JsValue> callback) {
+        return new JsIncrementalParser(this, callback, false);
+    }
+
+    // emits every element of the top level array(s) as soon as its last byte has been fed
+    public JsIncrementalParser incrementalElements(Consumer<JsValue> callback) {
+        return new JsIncrementalParser(this, callback, true);
+    }
+
+    public JsStream stream(String json) {
+        return new JsStream(this, () -> parser(json));
+    }
+
+    public JsStream stream(byte[] json) {
+        return new JsStream(this, () -> parser(json));
+    }
+
+    public JsStream stream(InputStream json) {
+        return new JsStream(this, () -> parser(json));
+    }
+
+    public JsStream stream(Path json) {
+        return new JsStream(this, () -> parser(json));
+    }
+
+    private JsonParser parser(String json) {
+        limits.checkTotal(json.length());
+        return Jackson.jsonParser(json);
+    }
+
+    private JsonParser parser(byte[] json) {
+        limits.checkTotal(json.length);
+        return Jackson.jsonParser(json);
+    }
+
+    private JsonParser parser(byte[] json, int offset, int length) {
+        limits.checkTotal(length);
+        return Jackson.jsonParser(json, offset, length);
+    }
+
+    private JsonParser parser(InputStream json) {
+        return Jackson.jsonParser(limits.limit(json));
+    }
+
+    private JsonParser parser(ByteBuffer json) {
+        limits.checkTotal(json.remaining());
+        return Jackson.jsonParser(json);
+    }
+
+    private JsonParser parser(Path json) {
+        checkTotal(json);
+        return Jackson.jsonParser(json);
+    }
+
+    private void checkTotal(Path json) {
+        try {
+            limits.checkTotal(Files.size(json));
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    // malformed input fails with a JsParseException, as with the other engines
+    private JsValue parseAndClose(JsonParser parser) {
+        try (JsonParser jp = parser) {
+            return readRoot(jp);
+        } catch (JsException e) {
+            throw e;
+        } catch (JsonProcessingException e) {
+            throw parseFailure(parser, e);
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    // reads a whole document and moves one token past it, so trailing garbage is reported
+    JsValue readRoot(JsonParser jp) throws IOException {
+        JsValue value = read(jp);
+        jp.nextToken();
+        return value;
+    }
+
+    // reads the value at the current token (or the next one if the parser has not started yet)
+    // and leaves the parser on the last token of that value
+    public JsValue read(JsonParser jp) throws IOException {
+        JsonToken token = jp.getCurrentToken();
+        if (token == null) {
+            token = jp.nextToken();
+        }
+        if (token == null) {
+            throw new JsonParseException(jp, "No content to map due to end-of-input");
+        }
+        return readValue(jp, token, 0);
+    }
+
+    // depth is the number of containers around the value. Open containers are kept on an explicit
+    // stack rather than on the thread stack, so any nesting allowed by the limits can be read
+    private JsValue readValue(JsonParser jp, JsonToken token, int depth) throws IOException {
+        if (token != JsonToken.START_OBJECT && token != JsonToken.FIELD_NAME && token != JsonToken.START_ARRAY) {
+            return readScalar(jp, token);
+        }
+        ArrayDeque<Container> parents = new ArrayDeque<>();
+        Container current = null;
+        while (true) {
+            if (token == JsonToken.START_OBJECT || token == JsonToken.FIELD_NAME || token == JsonToken.START_ARRAY) {
+                if (current != null) {
+                    parents.push(current);
+                }
+                current = new Container(token != JsonToken.START_ARRAY);
+                limits.checkDepth(jp, depth + parents.size() + 1);
+                if (token == JsonToken.START_OBJECT) {
+                    token = jp.nextToken();
+                } else if (token == JsonToken.START_ARRAY) {
+                    token = nextValueToken(jp);
+                }
+            } else {
+                current.add(readScalar(jp, token));
+                token = current.object ? jp.nextToken() : nextValueToken(jp);
+            }
+            // closes every container ending here, then moves to the next value
+            while (true) {
+                if (current.object && token == JsonToken.FIELD_NAME) {
+                    limits.checkFields(jp, ++current.size);
+                    current.key = fieldName(jp);
+                    token = nextValueToken(jp);
+                    break;
+                }
+                if (!current.object && token != JsonToken.END_ARRAY) {
+                    limits.checkArray(jp, ++current.size);
+                    break;
+                }
+                JsValue value = current.build();
+                if (parents.isEmpty()) {
+                    return value;
+                }
+                current = parents.pop();
+                current.add(value);
+                token = current.object ? jp.nextToken() : nextValueToken(jp);
+            }
+        }
+    }
+
+    private JsValue readScalar(JsonParser jp, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_STRING:
+                return readString(jp);
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return readNumber(jp);
+            case VALUE_TRUE:
+                return new JsBoolean(true);
+            case VALUE_FALSE:
+                return new JsBoolean(false);
+            case VALUE_NULL:
+                return JsNull.JSNULL_INSTANCE;
+            case VALUE_EMBEDDED_OBJECT:
+                return readEmbedded(jp);
+            default:
+                throw new JsonParseException(jp, "Unexpected token " + token);
+        }
+    }
+
+    private JsString readString(JsonParser jp) throws IOException {
+        limits.checkString(jp, jp.getTextLength());
+        if (strings != null && strings.accepts(jp.getTextLength())) {
+            return strings.intern(jp.getTextCharacters(), jp.getTextOffset(), jp.getTextLength());
+        }
+        return new JsString(jp.getText());
+    }
+
+    private JsNumber readNumber(JsonParser jp) throws IOException {
+        limits.checkNumber(jp, jp.getTextLength());
+        return new JsNumber(jp.getDecimalValue());
+    }
+
+    private String fieldName(JsonParser jp) throws IOException {
+        String name = jp.getCurrentName();
+        limits.checkString(jp, name.length());
+        if (symbols == null) {
+            return name;
+        }
+        return symbols.canonicalize(name);
+    }
+
+    private JsValue readEmbedded(JsonParser jp) throws IOException {
+        Object embedded = jp.getEmbeddedObject();
+        if (embedded == null) {
+            return JsNull.JSNULL_INSTANCE;
+        }
+        if (embedded instanceof JsValue) {
+            return (JsValue) embedded;
+        }
+        if (embedded instanceof byte[]) {
+            return new JsString(Base64Variants.getDefaultVariant().encode((byte[]) embedded));
+        }
+        return new JsString(embedded.toString());
+    }
+
+    // fields are put straight into one map, a later duplicate key wins like it did with JsObject.add.
+    // Elements are buffered and copied once, JsArray.addElement would copy the whole array on each element
+    static class Container {
+
+        final boolean object;
+        Map<String, JsValue> fields;
+        List<JsValue> elements;
+        String key;
+        int size = 0;
+
+        Container(boolean object) {
+            this.object = object;
+            if (object) {
+                fields = HashMap.empty();
+            } else {
+                elements = new ArrayList<>();
+            }
+        }
+
+        void add(JsValue value) {
+            if (object) {
+                fields = fields.put(key, value);
+            } else {
+                elements.add(value);
+            }
+        }
+
+        JsValue build() {
+            if (object) {
+                return new JsObject(fields);
+            }
+            return new JsArray(Array.ofAll(elements));
+        }
+    }
+
+    private static class LinesIterator implements Iterator<JsValue> {
+
+        private final JsParser engine;
+        private final JsonParser jp;
+        private boolean ready = false;
+        private boolean closed = false;
+
+        private LinesIterator(JsParser engine, JsonParser jp) {
+            this.engine = engine;
+            this.jp = jp;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!ready && !closed) {
+                try {
+                    ready = jp.nextToken() != null;
+                } catch (IOException e) {
+                    throw failure(e);
+                }
+                if (!ready) {
+                    close();
+                }
+            }
+            return ready;
+        }
+
+        @Override
+        public JsValue next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more json values");
+            }
+            ready = false;
+            try {
+                return engine.read(jp);
+            } catch (IOException e) {
+                throw failure(e);
+            }
+        }
+
+        private JsParseException failure(IOException e) {
+            close();
+            return parseFailure(jp, e);
+        }
+
+        private void close() {
+            closed = true;
+            closeQuietly(jp);
+        }
+    }
+
+    static JsParseException parseFailure(JsonParser jp, IOException e) {
+        JsonLocation location = jp.getCurrentLocation();
+        if (e instanceof JsonProcessingException && ((JsonProcessingException) e).getLocation() != null) {
+            location = ((JsonProcessingException) e).getLocation();
+        }
+        return new JsParseException("Invalid json at line " + location.getLineNr(), location.getLineNr(), location.getColumnNr(), e);
+    }
+
+    static void closeQuietly(JsonParser jp) {
+        try {
+            jp.close();
+        } catch (IOException e) {
+            // nothing more can be read anyway
+        }
+    }
+
+    private static JsonToken nextValueToken(JsonParser jp) throws IOException {
+        JsonToken token = jp.nextToken();
+        if (token == null) {
+            throw new JsonParseException(jp, "Unexpected end-of-input");
+        }
+        return token;
+    }
+}
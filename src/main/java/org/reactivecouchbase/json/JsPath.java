@@ -0,0 +1,106 @@
+package org.reactivecouchbase.json;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+// a querySelector path ("a.b[2].c", "[0].a") where "*" matches any field and "[*]" any index
+final class JsPath {
+
+    static final String ANY_FIELD = "*";
+    static final int ANY_INDEX = -1;
+
+    private static final Pattern dotSplitter = Pattern.compile("\\.");
+
+    private final String query;
+    // one entry per segment, a field name or null when the segment is an index
+    private final String[] fields;
+    private final int[] indexes;
+
+    private JsPath(String query, String[] fields, int[] indexes) {
+        this.query = query;
+        this.fields = fields;
+        this.indexes = indexes;
+    }
+
+    static JsPath parse(String query) {
+        if (query == null || query.isEmpty()) {
+            throw new IllegalArgumentException("Path can't be empty !");
+        }
+        List<String> fields = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for (String part : dotSplitter.split(query)) {
+            int bracket = part.indexOf('[');
+            String field = bracket < 0 ? part : part.substring(0, bracket);
+            if (!field.isEmpty()) {
+                fields.add(field);
+                indexes.add(ANY_INDEX);
+            } else if (bracket < 0) {
+                throw new IllegalArgumentException("Invalid path '" + query + "'");
+            }
+            while (bracket >= 0) {
+                int end = part.indexOf(']', bracket);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Invalid path '" + query + "'");
+                }
+                String index = part.substring(bracket + 1, end);
+                try {
+                    indexes.add(index.equals(ANY_FIELD) ? ANY_INDEX : Integer.parseInt(index));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid path '" + query + "'", e);
+                }
+                fields.add(null);
+                bracket = part.indexOf('[', end);
+                if (bracket < 0 && end != part.length() - 1) {
+                    throw new IllegalArgumentException("Invalid path '" + query + "'");
+                }
+            }
+        }
+        int[] idx = new int[indexes.size()];
+        for (int i = 0; i < idx.length; i++) {
+            idx[i] = indexes.get(i);
+        }
+        return new JsPath(query, fields.toArray(new String[fields.size()]), idx);
+    }
+
+    int length() {
+        return fields.length;
+    }
+
+    boolean matchesField(int depth, String field) {
+        return depth < fields.length && fields[depth] != null && (fields[depth].equals(ANY_FIELD) || fields[depth].equals(field));
+    }
+
+    boolean matchesIndex(int depth, int index) {
+        return depth < fields.length && fields[depth] == null && (indexes[depth] == ANY_INDEX || indexes[depth] == index);
+    }
+
+    // walks an already built value from the given depth and hands every match to the consumer
+    void select(JsValue value, int depth, Consumer<JsValue> consumer) {
+        if (depth == fields.length) {
+            consumer.accept(value);
+            return;
+        }
+        value = value.materialized();
+        if (value instanceof JsObject) {
+            for (io.vavr.Tuple2<String, JsValue> field : ((JsObject) value).values) {
+                if (matchesField(depth, field._1)) {
+                    select(field._2, depth + 1, consumer);
+                }
+            }
+        } else if (value instanceof JsArray) {
+            int index = 0;
+            for (JsValue element : ((JsArray) value).values) {
+                if (matchesIndex(depth, index++)) {
+                    select(element, depth + 1, consumer);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return query;
+    }
+}
@@ -0,0 +1,147 @@
+package org.reactivecouchbase.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.PrettyPrinter;
+import com.fasterxml.jackson.core.util.DefaultIndenter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+// lays out the output of JsValueWriter, one instance per document. With the default format the
+// output is the same as with DefaultPrettyPrinter, arrays that are broken over lines are an addition
+final class JsPrettyPrinter implements PrettyPrinter {
+
+    private final char[] spaces;
+    private final int indent;
+    private final int lineWidth;
+    // for each open array, whether its elements are written one per line
+    private final ArrayDeque<Boolean> arrays = new ArrayDeque<>();
+    private final StringBuilder scratch = new StringBuilder();
+    private boolean nextBroken = false;
+    private int nesting = 0;
+
+    JsPrettyPrinter(PrettyFormat format) {
+        this.indent = format.indent();
+        this.lineWidth = format.lineWidth();
+        this.spaces = new char[Math.max(64, indent)];
+        Arrays.fill(spaces, ' ');
+    }
+
+    // called by the writer before each array, arrays of scalars are kept on one line when they fit in the line width
+    void layout(JsArray array, String key) {
+        nextBroken = false;
+        if (lineWidth == 0) {
+            return;
+        }
+        int budget = lineWidth - nesting * indent;
+        scratch.setLength(0);
+        if (key != null) {
+            JsValueWriter.appendString(key, scratch);
+            scratch.append(" : ");
+        }
+        scratch.append('[');
+        boolean first = true;
+        for (JsValue value : array.values) {
+            if (value.materialized() instanceof JsObject || value.materialized() instanceof JsArray || scratch.length() + 2 > budget) {
+                nextBroken = true;
+                return;
+            }
+            scratch.append(first ? " " : ", ");
+            first = false;
+            JsValueWriter.append(value, scratch);
+        }
+        nextBroken = scratch.length() + 2 > budget;
+    }
+
+    @Override
+    public void writeRootValueSeparator(JsonGenerator gen) throws IOException {
+        gen.writeRaw(' ');
+    }
+
+    @Override
+    public void writeStartObject(JsonGenerator gen) throws IOException {
+        gen.writeRaw('{');
+        nesting++;
+    }
+
+    @Override
+    public void beforeObjectEntries(JsonGenerator gen) throws IOException {
+        newLine(gen);
+    }
+
+    @Override
+    public void writeObjectFieldValueSeparator(JsonGenerator gen) throws IOException {
+        gen.writeRaw(" : ");
+    }
+
+    @Override
+    public void writeObjectEntrySeparator(JsonGenerator gen) throws IOException {
+        gen.writeRaw(',');
+        newLine(gen);
+    }
+
+    @Override
+    public void writeEndObject(JsonGenerator gen, int nrOfEntries) throws IOException {
+        nesting--;
+        if (nrOfEntries > 0) {
+            newLine(gen);
+        } else {
+            gen.writeRaw(' ');
+        }
+        gen.writeRaw('}');
+    }
+
+    @Override
+    public void writeStartArray(JsonGenerator gen) throws IOException {
+        arrays.push(nextBroken);
+        if (nextBroken) {
+            nesting++;
+        }
+        nextBroken = false;
+        gen.writeRaw('[');
+    }
+
+    @Override
+    public void beforeArrayValues(JsonGenerator gen) throws IOException {
+        separate(gen);
+    }
+
+    @Override
+    public void writeArrayValueSeparator(JsonGenerator gen) throws IOException {
+        gen.writeRaw(',');
+        separate(gen);
+    }
+
+    @Override
+    public void writeEndArray(JsonGenerator gen, int nrOfValues) throws IOException {
+        boolean broken = arrays.pop();
+        if (broken) {
+            nesting--;
+        }
+        if (broken && nrOfValues > 0) {
+            newLine(gen);
+        } else {
+            gen.writeRaw(' ');
+        }
+        gen.writeRaw(']');
+    }
+
+    private void separate(JsonGenerator gen) throws IOException {
+        if (arrays.peek()) {
+            newLine(gen);
+        } else {
+            gen.writeRaw(' ');
+        }
+    }
+
+    private void newLine(JsonGenerator gen) throws IOException {
+        gen.writeRaw(DefaultIndenter.SYS_LF);
+        int remaining = nesting * indent;
+        while (remaining > 0) {
+            int length = Math.min(remaining, spaces.length);
+            gen.writeRaw(spaces, 0, length);
+            remaining -= length;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.reactivecouchbase.json;
+
+import io.vavr.collection.Seq;
+import io.vavr.control.Option;
+
+// json kept as its UTF-8 bytes, written verbatim by every serializer and only read when something is asked
+// from it. Containers are read one level at a time, the nested ones being JsRaw values over their own bytes
+public final class JsRaw extends JsValue {
+
+    private final JsParser engine;
+    private final RawJson raw;
+    private transient volatile JsValue value;
+
+    JsRaw(JsParser engine, RawJson raw) {
+        this.engine = engine;
+        this.raw = raw;
+    }
+
+    // the value held by the bytes, they are read on the first call
+    public JsValue value() {
+        JsValue current = value;
+        if (current == null) {
+            current = engine.index(raw);
+            value = current;
+        }
+        return current;
+    }
+
+    @Override
+    JsValue materialized() {
+        return value();
+    }
+
+    @Override
+    RawJson raw() {
+        return raw;
+    }
+
+    @Override
+    String toJsonString() {
+        return raw.getValue();
+    }
+
+    @Override
+    public JsRaw serialized() {
+        return this;
+    }
+
+    @Override
+    public Boolean exists(String field) {
+        return value().exists(field);
+    }
+
+    @Override
+    public JsValue field(String field) {
+        return value().field(field);
+    }
+
+    @Override
+    public Option<JsValue> fieldAsOpt(String field) {
+        return value().fieldAsOpt(field);
+    }
+
+    @Override
+    public Seq<JsValue> fields(String fieldName) {
+        return value().fields(fieldName);
+    }
+
+    @Override
+    public JsValue get(int idx) {
+        return value().get(idx);
+    }
+
+    @Override
+    public boolean deepEquals(Object o) {
+        return value().deepEquals(o);
+    }
+
+    @Override
+    public JsValue cloneNode() {
+        return value().cloneNode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof JsValue && value().equals(((JsValue) o).materialized());
+    }
+
+    @Override
+    public int hashCode() {
+        return value().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "JsRaw(" + raw.getValue() + ")";
+    }
+
+    private Object writeReplace() {
+        return value();
+    }
+}
@@ -0,0 +1,103 @@
+package org.reactivecouchbase.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// walks a document token by token and only builds the subtrees found at the subscribed paths
+public class JsStream {
+
+    private final JsParser engine;
+    private final Supplier<JsonParser> source;
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
+    JsStream(JsParser engine, Supplier<JsonParser> source) {
+        this.engine = engine;
+        this.source = source;
+    }
+
+    public JsStream on(String path, Consumer<JsValue> callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("Callback can't be null !");
+        }
+        subscriptions.add(new Subscription(JsPath.parse(path), callback));
+        return this;
+    }
+
+    public void run() {
+        JsonParser jp = source.get();
+        try {
+            JsonToken token = jp.nextToken();
+            if (token != null && !subscriptions.isEmpty()) {
+                walk(jp, token, 0, subscriptions);
+            }
+        } catch (IOException e) {
+            throw JsParser.parseFailure(jp, e);
+        } finally {
+            JsParser.closeQuietly(jp);
+        }
+    }
+
+    private void walk(JsonParser jp, JsonToken token, int depth, List<Subscription> candidates) throws IOException {
+        for (Subscription subscription : candidates) {
+            if (subscription.path.length() == depth) {
+                JsValue value = engine.read(jp);
+                // longer paths living under a matched one are looked up in the subtree that was just built
+                for (Subscription candidate : candidates) {
+                    candidate.path.select(value, depth, candidate.callback);
+                }
+                return;
+            }
+        }
+        if (token == JsonToken.START_OBJECT) {
+            for (JsonToken t = jp.nextToken(); t == JsonToken.FIELD_NAME; t = jp.nextToken()) {
+                String field = jp.getCurrentName();
+                JsonToken valueToken = jp.nextToken();
+                List<Subscription> next = null;
+                for (Subscription candidate : candidates) {
+                    if (candidate.path.matchesField(depth, field)) {
+                        next = next == null ? new ArrayList<>() : next;
+                        next.add(candidate);
+                    }
+                }
+                if (next == null) {
+                    jp.skipChildren();
+                } else {
+                    walk(jp, valueToken, depth + 1, next);
+                }
+            }
+        } else if (token == JsonToken.START_ARRAY) {
+            int index = 0;
+            for (JsonToken t = jp.nextToken(); t != null && t != JsonToken.END_ARRAY; t = jp.nextToken()) {
+                List<Subscription> next = null;
+                for (Subscription candidate : candidates) {
+                    if (candidate.path.matchesIndex(depth, index)) {
+                        next = next == null ? new ArrayList<>() : next;
+                        next.add(candidate);
+                    }
+                }
+                if (next == null) {
+                    jp.skipChildren();
+                } else {
+                    walk(jp, t, depth + 1, next);
+                }
+                index++;
+            }
+        }
+    }
+
+    private static class Subscription {
+        private final JsPath path;
+        private final Consumer<JsValue> callback;
+
+        private Subscription(JsPath path, Consumer<JsValue> callback) {
+            this.path = path;
+            this.callback = callback;
+        }
+    }
+}
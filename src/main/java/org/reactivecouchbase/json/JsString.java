@@ -1,6 +1,5 @@
 package org.reactivecouchbase.json;
 
-import com.fasterxml.jackson.databind.node.TextNode;
 import io.vavr.control.Option;
 
 public class JsString extends JsValue implements java.lang.Comparable<JsString> {
@@ -34,7 +33,9 @@ public class JsString extends JsValue implements java.lang.Comparable<JsString>
 
     @Override
     String toJsonString() {
-        return new TextNode(value).toString();
+        StringBuilder builder = new StringBuilder(value.length() + 2);
+        JsValueWriter.appendString(value, builder);
+        return builder.toString();
     }
 
     @Override
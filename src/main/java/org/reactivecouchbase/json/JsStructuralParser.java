@@ -0,0 +1,449 @@
+package org.reactivecouchbase.json;
+
+import io.vavr.collection.Array;
+import io.vavr.collection.HashMap;
+import io.vavr.collection.Map;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// two stage parser. The first stage scans the input 8 bytes at a time to index the structural
+// characters ({}[]:,) and the opening quotes of strings, pairing every open bracket with its close.
+// The second stage builds the values from that index, scalars being read by a JsByteParser. Unwanted
+// values of a projection are walked through the index and checked without building anything
+final class JsStructuralParser {
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    // '[' and ']' only differ from '{' and '}' by this bit
+    private static final long CASE = ONES * 0x20;
+    private static final long QUOTES = ONES * '"';
+    private static final long BACKSLASHES = ONES * '\\';
+    private static final long OPENS = ONES * '{';
+    private static final long CLOSES = ONES * '}';
+    private static final long COLONS = ONES * ':';
+    private static final long COMMAS = ONES * ',';
+
+    private final byte[] bytes;
+    private final int end;
+    private final ParseLimits limits;
+    private final JsByteParser scalars;
+    // byte positions of the structural characters, in order
+    private int[] positions;
+    // for an open bracket, the entry of its close
+    private int[] matches;
+    private int count = 0;
+    private int cursor = 0;
+
+    private JsStructuralParser(JsParser engine, byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.end = offset + length;
+        this.limits = engine.limits();
+        this.scalars = new JsByteParser(engine, bytes, offset, length);
+        this.positions = new int[Math.max(16, length / 8)];
+        this.matches = new int[positions.length];
+    }
+
+    static JsValue parse(JsParser engine, byte[] bytes, int offset, int length) {
+        JsStructuralParser parser = new JsStructuralParser(engine, bytes, offset, length);
+        int root = parser.scalars.skipToRoot();
+        parser.index(root);
+        JsValue value = parser.readValue(root);
+        parser.scalars.checkTrailing(root);
+        return value;
+    }
+
+    // only the given querySelector paths are built, like JsParser.parse(json, paths)
+    static JsValue project(JsParser engine, byte[] bytes, int offset, int length, String... paths) {
+        JsStructuralParser parser = new JsStructuralParser(engine, bytes, offset, length);
+        int root = parser.scalars.skipToRoot();
+        parser.index(root);
+        List<JsPath> candidates = new ArrayList<>();
+        for (String path : paths) {
+            candidates.add(JsPath.parse(path));
+        }
+        if (candidates.isEmpty()) {
+            JsValue value = parser.readValue(root);
+            parser.scalars.checkTrailing(root);
+            return value;
+        }
+        JsValue value = parser.project(root, 0, candidates);
+        parser.scalars.checkTrailing(root);
+        return value == null ? JsUndefined.JSUNDEFINED_INSTANCE : value;
+    }
+
+    // stage one
+    private void index(int from) {
+        ByteBuffer words = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        byte[] tail = new byte[8];
+        int[] open = new int[16];
+        int depth = 0;
+        boolean inString = false;
+        int escaped = -1;
+        for (int base = from; base < end; base += 8) {
+            long word;
+            if (end - base >= 8) {
+                word = words.getLong(base);
+            } else {
+                Arrays.fill(tail, (byte) ' ');
+                System.arraycopy(bytes, base, tail, 0, end - base);
+                word = ByteBuffer.wrap(tail).order(ByteOrder.LITTLE_ENDIAN).getLong();
+            }
+            long folded = word | CASE;
+            long candidates = matching(word, QUOTES) | matching(word, BACKSLASHES) | matching(folded, OPENS)
+                    | matching(folded, CLOSES) | matching(word, COLONS) | matching(word, COMMAS);
+            // most words of long strings and numbers hold no candidate at all
+            while (candidates != 0) {
+                int position = base + (Long.numberOfTrailingZeros(candidates) >>> 3);
+                candidates &= candidates - 1;
+                if (position == escaped) {
+                    continue;
+                }
+                byte b = bytes[position];
+                if (inString) {
+                    if (b == '\\') {
+                        escaped = position + 1;
+                    } else if (b == '"') {
+                        inString = false;
+                    }
+                    continue;
+                }
+                if (b == '\\') {
+                    continue;
+                }
+                add(position);
+                if (b == '"') {
+                    inString = true;
+                } else if (b == '{' || b == '[') {
+                    if (depth + 1 > limits.maxDepth()) {
+                        scalars.moveTo(position);
+                        throw scalars.exceeded("depth", limits.maxDepth());
+                    }
+                    if (depth == open.length) {
+                        open = Arrays.copyOf(open, depth * 2);
+                    }
+                    open[depth++] = count - 1;
+                    matches[count - 1] = -1;
+                } else if (b == '}' || b == ']') {
+                    if (depth == 0) {
+                        // what follows the root value is left to the trailing check
+                        count--;
+                        return;
+                    }
+                    if (bytes[positions[open[depth - 1]]] != (b == '}' ? '{' : '[')) {
+                        scalars.moveTo(position + 1);
+                        throw scalars.unexpected(b, "expected a value");
+                    }
+                    matches[open[--depth]] = count - 1;
+                    if (depth == 0) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    // the high bit of every byte of the word equal to the pattern's byte is set, without false positives
+    private static long matching(long word, long pattern) {
+        long x = word ^ pattern;
+        return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+    }
+
+    private void add(int position) {
+        if (count == positions.length) {
+            positions = Arrays.copyOf(positions, count * 2);
+            matches = Arrays.copyOf(matches, count * 2);
+        }
+        positions[count++] = position;
+    }
+
+    // stage two, separators and closes are taken from the index instead of being searched for
+    private JsValue readValue(int at) {
+        ArrayDeque<JsParser.Container> parents = new ArrayDeque<>();
+        JsParser.Container current = null;
+        int position = at;
+        while (true) {
+            byte b = bytes[position];
+            JsValue value;
+            if (b == '{' || b == '[') {
+                cursor++;
+                if (current != null) {
+                    parents.push(current);
+                }
+                current = new JsParser.Container(b == '{');
+                if (!closesRightAway(position, current.object)) {
+                    position = enter(current, position + 1);
+                    continue;
+                }
+                value = current.build();
+                current = parents.poll();
+            } else {
+                value = readScalar(position);
+            }
+            // attaches the value, then closes every container ending here
+            while (true) {
+                if (current == null) {
+                    return value;
+                }
+                current.add(value);
+                int entry = separator();
+                byte c = bytes[entry];
+                if (c == ',') {
+                    position = enter(current, entry + 1);
+                    break;
+                }
+                if (c != (current.object ? '}' : ']')) {
+                    scalars.moveTo(entry + 1);
+                    throw scalars.unexpected(c, current.object ? "was expecting comma to separate object entries" : "was expecting comma to separate array entries");
+                }
+                scalars.moveTo(entry + 1);
+                value = current.build();
+                current = parents.poll();
+            }
+        }
+    }
+
+    // moves to the next member of the container, from the byte following its '{', '[' or ','
+    private int enter(JsParser.Container container, int from) {
+        if (container.object) {
+            if (++container.size > limits.maxFieldsPerObject()) {
+                throw scalars.exceeded("fields per object", limits.maxFieldsPerObject());
+            }
+            container.key = readFieldName(from, true);
+        } else if (++container.size > limits.maxArrayLength()) {
+            throw scalars.exceeded("array length", limits.maxArrayLength());
+        } else {
+            scalars.moveTo(from);
+        }
+        return valueStart();
+    }
+
+    // reads a field name and its colon, only whitespace is allowed around them. The name is only
+    // checked when it is not kept
+    private String readFieldName(int from, boolean keep) {
+        scalars.moveTo(from);
+        scalars.skipWhitespace();
+        int quote = scalars.position();
+        if (cursor >= count || positions[cursor] != quote || bytes[quote] != '"') {
+            throw scalars.unexpected(quote < end ? bytes[quote] : -1, "was expecting double-quote to start field name");
+        }
+        cursor++;
+        scalars.moveTo(quote + 1);
+        String key = null;
+        if (keep) {
+            key = scalars.readFieldName();
+        } else {
+            scalars.skipFieldName();
+        }
+        scalars.skipWhitespace();
+        int colon = scalars.position();
+        if (cursor >= count || positions[cursor] != colon || bytes[colon] != ':') {
+            throw scalars.unexpected(colon < end ? bytes[colon] : -1, "was expecting a colon to separate field name and value");
+        }
+        cursor++;
+        scalars.moveTo(colon + 1);
+        return key;
+    }
+
+    // the first byte of the value following the current parser position
+    private int valueStart() {
+        if (!scalars.skipWhitespace()) {
+            throw scalars.failure("Unexpected end-of-input");
+        }
+        return scalars.position();
+    }
+
+    private JsValue readScalar(int position) {
+        if (bytes[position] == '"') {
+            cursor++;
+        }
+        JsValue value = scalars.readScalarAt(position);
+        checkScalarEnd();
+        return value;
+    }
+
+    private void skipScalar(int position) {
+        if (bytes[position] == '"') {
+            cursor++;
+        }
+        scalars.skipScalarAt(position);
+        checkScalarEnd();
+    }
+
+    // nothing but whitespace may separate a scalar from the next structural character. The parser
+    // stays right after the scalar, what follows a scalar root is checked like it is by the other engines
+    private void checkScalarEnd() {
+        int after = scalars.position();
+        if (cursor < count && scalars.skipWhitespace() && scalars.position() != positions[cursor]) {
+            int at = scalars.position();
+            scalars.moveTo(at + 1);
+            throw scalars.unexpected(bytes[at], "was expecting comma or a close marker");
+        }
+        scalars.moveTo(after);
+    }
+
+    // true when only whitespace separates the container just entered from its close, which is then consumed
+    private boolean closesRightAway(int position, boolean object) {
+        scalars.moveTo(position + 1);
+        valueStart();
+        int next = nextEntry();
+        if (positions[next] != scalars.position() || bytes[positions[next]] != (object ? '}' : ']')) {
+            return false;
+        }
+        cursor++;
+        scalars.moveTo(positions[next] + 1);
+        return true;
+    }
+
+    // consumes the structural character following a value read up to the current parser position
+    private int separator() {
+        int entry = positions[nextEntry()];
+        if (scalars.skipWhitespace() && scalars.position() != entry) {
+            int at = scalars.position();
+            scalars.moveTo(at + 1);
+            throw scalars.unexpected(bytes[at], "was expecting comma or a close marker");
+        }
+        cursor++;
+        return entry;
+    }
+
+    private int nextEntry() {
+        if (cursor >= count) {
+            scalars.moveTo(end);
+            throw scalars.failure("Unexpected end-of-input: expected close marker");
+        }
+        return cursor;
+    }
+
+    // returns null when nothing under the value is wanted, like JsParser.project
+    private JsValue project(int position, int depth, List<JsPath> candidates) {
+        for (JsPath candidate : candidates) {
+            if (candidate.length() == depth) {
+                return readValue(position);
+            }
+        }
+        byte b = bytes[position];
+        if (b != '{' && b != '[') {
+            skipScalar(position);
+            return null;
+        }
+        if (depth + 1 > limits.maxDepth()) {
+            throw scalars.exceeded("depth", limits.maxDepth());
+        }
+        cursor++;
+        boolean object = b == '{';
+        Map<String, JsValue> fields = HashMap.empty();
+        List<JsValue> elements = new ArrayList<>();
+        int kept = 0;
+        int index = 0;
+        int from = position + 1;
+        if (!closesRightAway(position, object)) {
+            while (true) {
+                String key = null;
+                if (object) {
+                    if (index + 1 > limits.maxFieldsPerObject()) {
+                        throw scalars.exceeded("fields per object", limits.maxFieldsPerObject());
+                    }
+                    key = readFieldName(from, true);
+                } else if (index + 1 > limits.maxArrayLength()) {
+                    throw scalars.exceeded("array length", limits.maxArrayLength());
+                } else {
+                    scalars.moveTo(from);
+                }
+                int start = valueStart();
+                List<JsPath> next = new ArrayList<>();
+                for (JsPath candidate : candidates) {
+                    if (object ? candidate.matchesField(depth, key) : candidate.matchesIndex(depth, index)) {
+                        next.add(candidate);
+                    }
+                }
+                JsValue value = null;
+                if (next.isEmpty()) {
+                    skip(start);
+                } else {
+                    value = project(start, depth + 1, next);
+                }
+                if (object && value != null) {
+                    fields = fields.put(key, value);
+                } else if (!object) {
+                    // skipped elements are kept as nulls up to the last wanted one, so indexes stay valid
+                    elements.add(value == null ? JsNull.JSNULL_INSTANCE : value);
+                    kept = value == null ? kept : index + 1;
+                }
+                index++;
+                int entry = separator();
+                byte c = bytes[entry];
+                scalars.moveTo(entry + 1);
+                if (c == (object ? '}' : ']')) {
+                    break;
+                }
+                if (c != ',') {
+                    throw scalars.unexpected(c, "was expecting comma to separate entries");
+                }
+                from = entry + 1;
+            }
+        }
+        if (object) {
+            return new JsObject(fields);
+        }
+        return new JsArray(Array.ofAll(elements.subList(0, kept)));
+    }
+
+    // checks the value like readValue does without building anything, the brackets were already paired
+    // by the first stage. The parser is left at the end of the skipped value
+    private void skip(int position) {
+        // whether each open container is an object
+        boolean[] objects = new boolean[8];
+        int depth = 0;
+        int at = position;
+        while (true) {
+            byte b = bytes[at];
+            if (b == '{' || b == '[') {
+                cursor++;
+                if (!closesRightAway(at, b == '{')) {
+                    if (depth == objects.length) {
+                        objects = Arrays.copyOf(objects, depth * 2);
+                    }
+                    objects[depth++] = b == '{';
+                    at = skipEntry(objects[depth - 1], at + 1);
+                    continue;
+                }
+            } else {
+                skipScalar(at);
+            }
+            // closes every container ending here
+            while (true) {
+                if (depth == 0) {
+                    return;
+                }
+                boolean object = objects[depth - 1];
+                int entry = separator();
+                byte c = bytes[entry];
+                if (c == ',') {
+                    at = skipEntry(object, entry + 1);
+                    break;
+                }
+                if (c != (object ? '}' : ']')) {
+                    scalars.moveTo(entry + 1);
+                    throw scalars.unexpected(c, object ? "was expecting comma to separate object entries" : "was expecting comma to separate array entries");
+                }
+                scalars.moveTo(entry + 1);
+                depth--;
+            }
+        }
+    }
+
+    // moves to the next member of a skipped container, from the byte following its '{', '[' or ','
+    private int skipEntry(boolean object, int from) {
+        if (object) {
+            readFieldName(from, false);
+        } else {
+            scalars.moveTo(from);
+        }
+        return valueStart();
+    }
+}
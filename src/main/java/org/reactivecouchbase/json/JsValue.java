@@ -1,5 +1,6 @@
 package org.reactivecouchbase.json;
 
+import io.vavr.Tuple2;
 import io.vavr.collection.Array;
 import io.vavr.collection.Seq;
 import io.vavr.control.Option;
@@ -8,6 +9,9 @@ import org.reactivecouchbase.json.mapping.*;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 
@@ -16,6 +20,10 @@ public abstract class JsValue implements Serializable {
         if (is(clazz)) {
             return Option.some(clazz.cast(this));
         }
+        JsValue value = materialized();
+        if (value != this && value.is(clazz)) {
+            return Option.some(clazz.cast(value));
+        }
         return Option.none();
     }
 
@@ -25,16 +33,58 @@ public abstract class JsValue implements Serializable {
 
     abstract String toJsonString();
 
+    // the value readers and comparisons see, a JsRaw is read from its bytes
+    JsValue materialized() {
+        return this;
+    }
+
+    // the serialized form of this value when it is already known, generators copy it verbatim
+    RawJson raw() {
+        return null;
+    }
+
+    // a copy of this value keeping its compact UTF-8 form, written as is every time it is serialized again,
+    // alone or nested in other values. Scalars are cheap enough to write and are returned as they are
+    public JsValue serialized() {
+        return this;
+    }
+
+    public long serializedSize() {
+        return Jackson.serializedSize(this);
+    }
+
+    // hash of the canonical form (see Json.toCanonicalBytes), any MessageDigest algorithm or XXH64
+    public byte[] digest(String algorithm) {
+        if (algorithm == null) {
+            throw new IllegalArgumentException("Algorithm can't be null !");
+        }
+        if (XxHash64.ALGORITHM.equalsIgnoreCase(algorithm)) {
+            return digest(new XxHash64());
+        }
+        try {
+            return digest(MessageDigest.getInstance(algorithm));
+        } catch (NoSuchAlgorithmException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    public byte[] digest(MessageDigest digest) {
+        if (digest == null) {
+            throw new IllegalArgumentException("Digest can't be null !");
+        }
+        return Jackson.digest(this, digest);
+    }
+
     public <T> T as(Reader<T> reader) {
-        return reader.read(this).getOpt().get();
+        return reader.read(materialized()).getOpt().get();
     }
 
     public <T> T as(Format<T> reader) {
-        return reader.read(this).getOpt().get();
+        return reader.read(materialized()).getOpt().get();
     }
 
     public <T> T as(Class<T> clazz, Reader<T> reader) {
-        return reader.read(this).getOpt().get();
+        return reader.read(materialized()).getOpt().get();
     }
 
     public <T> T as(Class<T> clazz) {
@@ -138,49 +188,49 @@ public abstract class JsValue implements Serializable {
     }
 
     public <T> Option<T> asOpt(Reader<T> reader) {
-        return reader.read(this).getOpt();
+        return reader.read(materialized()).getOpt();
     }
 
     public <T> Option<T> asOpt(Format<T> reader) {
-        return reader.read(this).getOpt();
+        return reader.read(materialized()).getOpt();
     }
 
     public <T> Option<T> asOpt(Class<T> clazz, Reader<T> reader) {
-        return reader.read(this).getOpt();
+        return reader.read(materialized()).getOpt();
     }
 
     public <T> Option<T> asOpt(Class<T> clazz) {
         for (Reader<T> reader : DefaultReaders.getReader(clazz)) {
-            return reader.read(this).getOpt();
+            return reader.read(materialized()).getOpt();
         }
         return Option.none();
     }
 
     public <T> JsResult<T> read(Class<T> clazz) {
         for (Reader<T> reader : DefaultReaders.getReader(clazz)) {
-            return reader.read(this);
+            return reader.read(materialized());
         }
         return new JsError<T>(new IllegalStateException("Cannot find reader for type " + clazz.getName()));
     }
 
     public <T> JsResult<T> read(Reader<T> reader) {
-        return reader.read(this);
+        return reader.read(materialized());
     }
 
     public <T> JsResult<T> validate(Reader<T> reader) {
-        return reader.read(this);
+        return reader.read(materialized());
     }
 
     public <E, T> Validation<E, T> validate(Function<JsValue, Validation<E, T>> rule) {
-        return rule.apply(this);
+        return rule.apply(materialized());
     }
 
     public <E, T> Validation<E, T> read(Function<JsValue, Validation<E, T>> rule) {
-        return rule.apply(this);
+        return rule.apply(materialized());
     }
 
     public <A extends JsValue> JsResult<A> transform(Reader<A> reader) {
-        return reader.read(this);
+        return reader.read(materialized());
     }
 
     public Boolean exists(String field) {
@@ -238,6 +288,44 @@ public abstract class JsValue implements Serializable {
 
     public abstract boolean deepEquals(Object o);
 
+    // shared by JsObject and JsArray, pairs of nested values are queued until one of them differs
+    static boolean deepEquals(JsValue value, Object other) {
+        ArrayDeque<Object[]> pending = new ArrayDeque<>();
+        pending.push(new Object[]{value, other});
+        while (!pending.isEmpty()) {
+            Object[] pair = pending.pop();
+            JsValue left = pair[0] == null ? null : ((JsValue) pair[0]).materialized();
+            Object right = pair[1] instanceof JsValue ? ((JsValue) pair[1]).materialized() : pair[1];
+            if (left == right) {
+                continue;
+            }
+            if (left == null || right == null) {
+                return false;
+            }
+            if (left instanceof JsObject) {
+                if (!(right instanceof JsObject)) {
+                    return false;
+                }
+                JsObject object = (JsObject) right;
+                for (Tuple2<String, JsValue> field : ((JsObject) left).values) {
+                    pending.push(new Object[]{object.field(field._1), field._2});
+                }
+            } else if (left instanceof JsArray) {
+                if (!(right instanceof JsArray)) {
+                    return false;
+                }
+                JsArray array = (JsArray) left;
+                JsArray jsArray = (JsArray) right;
+                for (int i = array.size() - 1; i >= 0; i--) {
+                    pending.push(new Object[]{array.get(i), jsArray.get(i)});
+                }
+            } else if (!left.deepEquals(right)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public abstract JsValue cloneNode();
 
     public String stringify() {
@@ -0,0 +1,245 @@
+package org.reactivecouchbase.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.CharTypes;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import io.vavr.Tuple2;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+// turns values into generator calls, or straight into compact text for toString
+final class JsValueWriter {
+
+    // integral values with more digits (1e20 and above) are written with an exponent, unless they already had none
+    private static final int MAX_PLAIN_DIGITS = 20;
+    private static final int MAX_LONG_DIGITS = 18;
+    // UTF-16 code unit order of the names, as in RFC 8785
+    private static final Comparator<Tuple2<String, JsValue>> FIELD_ORDER = Comparator.comparing(Tuple2::_1);
+
+    private JsValueWriter() {
+    }
+
+    static void write(JsValue value, JsonGenerator json) throws IOException {
+        write(value, json, false);
+    }
+
+    // canonical output sorts the fields of objects by name, numbers are always normalized by writeNumber
+    static void write(JsValue value, JsonGenerator json, boolean canonical) throws IOException {
+        // already serialized values are copied as is, unless the output is re-indented, canonical or turned into a tree
+        boolean verbatim = json.getPrettyPrinter() == null && !(json instanceof TokenBuffer) && !canonical;
+        JsPrettyPrinter printer = json.getPrettyPrinter() instanceof JsPrettyPrinter ? (JsPrettyPrinter) json.getPrettyPrinter() : null;
+        ArrayDeque<Iterator<?>> stack = new ArrayDeque<>();
+        JsValue current = value;
+        // name of the field being written, the printer needs it to know where an array starts on its line
+        String key = null;
+        while (true) {
+            if (current != null) {
+                if (printer != null && current.materialized() instanceof JsArray) {
+                    printer.layout((JsArray) current.materialized(), key);
+                }
+                Iterator<?> children = open(current, json, verbatim, canonical);
+                if (children != null) {
+                    stack.push(children);
+                }
+            }
+            if (stack.isEmpty()) {
+                return;
+            }
+            Iterator<?> parent = stack.peek();
+            if (!parent.hasNext()) {
+                stack.pop();
+                if (json.getOutputContext().inArray()) {
+                    json.writeEndArray();
+                } else {
+                    json.writeEndObject();
+                }
+                current = null;
+            } else {
+                Object next = parent.next();
+                if (next instanceof Tuple2) {
+                    @SuppressWarnings("unchecked")
+                    Tuple2<String, JsValue> field = (Tuple2<String, JsValue>) next;
+                    json.writeFieldName(field._1);
+                    key = field._1;
+                    current = field._2;
+                } else {
+                    key = null;
+                    current = (JsValue) next;
+                }
+            }
+        }
+    }
+
+    // writes a scalar or the start of a container, whose children are then returned
+    private static Iterator<?> open(JsValue value, JsonGenerator json, boolean verbatim, boolean canonical) throws IOException {
+        RawJson serialized = value.raw();
+        if (serialized != null && verbatim) {
+            json.writeRawValue(serialized);
+            return null;
+        }
+        value = value.materialized();
+        if (value instanceof JsObject) {
+            json.writeStartObject();
+            if (canonical) {
+                List<Tuple2<String, JsValue>> fields = ((JsObject) value).values.toJavaList();
+                fields.sort(FIELD_ORDER);
+                return fields.iterator();
+            }
+            return ((JsObject) value).values.iterator();
+        }
+        if (value instanceof JsArray) {
+            json.writeStartArray();
+            return ((JsArray) value).values.iterator();
+        }
+        if (value instanceof JsNumber) {
+            writeNumber((JsNumber) value, json);
+        } else if (value instanceof JsString) {
+            json.writeString(((JsString) value).value);
+        } else if (value instanceof JsBoolean) {
+            json.writeBoolean(((JsBoolean) value).value);
+        } else if (value instanceof JsNull || value instanceof JsUndefined) {
+            json.writeNull();
+        }
+        return null;
+    }
+
+    // Same behaviour as if JsonGenerator were configured with WRITE_BIGDECIMAL_AS_PLAIN for integral values
+    // below 1e20, forced as this configuration is ignored when called from ObjectMapper.valueToTree. Integral
+    // values are written without trailing zeros or exponent, others as their stripped BigDecimal
+    private static void writeNumber(JsNumber number, JsonGenerator json) throws IOException {
+        BigDecimal value = number.value;
+        // trees keep building BigIntegerNodes for integral values, as they always did
+        boolean exact = json instanceof TokenBuffer;
+        if (value.scale() == 0 && value.precision() <= MAX_LONG_DIGITS && !exact) {
+            json.writeNumber(value.longValue());
+            return;
+        }
+        BigDecimal stripped = value.stripTrailingZeros();
+        int scale = stripped.scale();
+        if (scale > 0) {
+            json.writeNumber(stripped);
+            return;
+        }
+        int digits = stripped.precision() - scale;
+        if (digits <= MAX_LONG_DIGITS && !exact) {
+            json.writeNumber(stripped.longValue());
+        } else if (scale == 0 || digits <= MAX_PLAIN_DIGITS) {
+            json.writeNumber(stripped.toBigInteger());
+        } else {
+            json.writeNumber(stripped);
+        }
+    }
+
+    static String toJsonString(JsValue value) {
+        StringBuilder builder = new StringBuilder();
+        append(value, builder);
+        return builder.toString();
+    }
+
+    // same walk as write, for the compact form returned by toJsonString
+    static void append(JsValue value, StringBuilder builder) {
+        ArrayDeque<Iterator<?>> stack = new ArrayDeque<>();
+        ArrayDeque<Character> closings = new ArrayDeque<>();
+        JsValue current = value;
+        while (true) {
+            if (current != null) {
+                Iterator<?> children = null;
+                RawJson serialized = current.raw();
+                if (serialized != null) {
+                    builder.append(serialized.getValue());
+                } else if (current instanceof JsObject) {
+                    builder.append('{');
+                    children = ((JsObject) current).values.iterator();
+                    closings.push('}');
+                } else if (current instanceof JsArray) {
+                    builder.append('[');
+                    children = ((JsArray) current).values.iterator();
+                    closings.push(']');
+                } else if (current instanceof JsString) {
+                    appendString(((JsString) current).value, builder);
+                } else if (current instanceof JsNumber) {
+                    appendNumber(((JsNumber) current).value, builder);
+                } else {
+                    builder.append(current.toJsonString());
+                }
+                if (children != null) {
+                    stack.push(children);
+                    current = null;
+                    if (children.hasNext()) {
+                        current = next(children, builder);
+                    }
+                    continue;
+                }
+            }
+            if (stack.isEmpty()) {
+                return;
+            }
+            Iterator<?> parent = stack.peek();
+            if (parent.hasNext()) {
+                builder.append(',');
+                current = next(parent, builder);
+            } else {
+                stack.pop();
+                builder.append(closings.pop());
+                current = null;
+            }
+        }
+    }
+
+    private static JsValue next(Iterator<?> children, StringBuilder builder) {
+        Object next = children.next();
+        if (next instanceof Tuple2) {
+            @SuppressWarnings("unchecked")
+            Tuple2<String, JsValue> field = (Tuple2<String, JsValue>) next;
+            appendString(field._1, builder);
+            builder.append(':');
+            return field._2;
+        }
+        return (JsValue) next;
+    }
+
+    // quoted and escaped the way JsonGenerator and TextNode do it
+    static void appendString(String value, StringBuilder builder) {
+        builder.append('"');
+        int[] escapes = CharTypes.get7BitOutputEscapes();
+        int length = value.length();
+        int i = 0;
+        while (i < length) {
+            char c = value.charAt(i);
+            if (c < escapes.length && escapes[c] != 0) {
+                break;
+            }
+            i++;
+        }
+        if (i == length) {
+            builder.append(value);
+        } else {
+            builder.append(value, 0, i);
+            CharTypes.appendQuoted(builder, value.substring(i));
+        }
+        builder.append('"');
+    }
+
+    // same rules as writeNumber
+    static void appendNumber(BigDecimal value, StringBuilder builder) {
+        if (value.scale() == 0 && value.precision() <= MAX_LONG_DIGITS) {
+            builder.append(value.longValue());
+            return;
+        }
+        BigDecimal stripped = value.stripTrailingZeros();
+        int scale = stripped.scale();
+        int digits = stripped.precision() - scale;
+        if (scale > 0 || (scale < 0 && digits > MAX_PLAIN_DIGITS)) {
+            builder.append(stripped.toString());
+        } else if (digits <= MAX_LONG_DIGITS) {
+            builder.append(stripped.longValue());
+        } else {
+            builder.append(stripped.toBigInteger());
+        }
+    }
+}
@@ -2,12 +2,20 @@ package org.reactivecouchbase.json;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import io.vavr.collection.Array;
+import io.vavr.collection.Iterator;
 import io.vavr.collection.Map;
 import io.vavr.collection.Seq;
 import io.vavr.control.Validation;
 import org.reactivecouchbase.json.mapping.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 public class Json {
 
@@ -53,7 +61,147 @@ public class Json {
     }
 
     public static JsValue parse(String json) {
-        return Jackson.parseJsValue(json);
+        return JsParser.DEFAULT.parse(json);
+    }
+
+    public static JsValue parse(byte[] json) {
+        return JsParser.DEFAULT.parse(json);
+    }
+
+    public static JsValue parse(byte[] json, int offset, int length) {
+        return JsParser.DEFAULT.parse(json, offset, length);
+    }
+
+    public static JsValue parse(InputStream json) {
+        return JsParser.DEFAULT.parse(json);
+    }
+
+    public static JsValue parse(ByteBuffer json) {
+        return JsParser.DEFAULT.parse(json);
+    }
+
+    public static JsValue parse(Path json) {
+        return JsParser.DEFAULT.parse(json);
+    }
+
+    public static JsValue parse(String json, ParseLimits limits) {
+        return JsParser.DEFAULT.withLimits(limits).parse(json);
+    }
+
+    public static JsValue parse(byte[] json, ParseLimits limits) {
+        return JsParser.DEFAULT.withLimits(limits).parse(json);
+    }
+
+    public static JsValue parse(InputStream json, ParseLimits limits) {
+        return JsParser.DEFAULT.withLimits(limits).parse(json);
+    }
+
+    public static JsValue parse(ByteBuffer json, ParseLimits limits) {
+        return JsParser.DEFAULT.withLimits(limits).parse(json);
+    }
+
+    public static JsValue parse(Path json, ParseLimits limits) {
+        return JsParser.DEFAULT.withLimits(limits).parse(json);
+    }
+
+    public static JsValue parse(String json, String... paths) {
+        return JsParser.DEFAULT.parse(json, paths);
+    }
+
+    public static JsValue parse(byte[] json, String... paths) {
+        return JsParser.DEFAULT.parse(json, paths);
+    }
+
+    public static JsValue parse(InputStream json, String... paths) {
+        return JsParser.DEFAULT.parse(json, paths);
+    }
+
+    public static JsValue parse(Path json, String... paths) {
+        return JsParser.DEFAULT.parse(json, paths);
+    }
+
+    public static void parse(String json, JsonHandler handler) {
+        JsParser.DEFAULT.parse(json, handler);
+    }
+
+    public static void parse(byte[] json, JsonHandler handler) {
+        JsParser.DEFAULT.parse(json, handler);
+    }
+
+    public static void parse(InputStream json, JsonHandler handler) {
+        JsParser.DEFAULT.parse(json, handler);
+    }
+
+    public static void parse(Path json, JsonHandler handler) {
+        JsParser.DEFAULT.parse(json, handler);
+    }
+
+    public static JsValue parseLazy(String json) {
+        return JsParser.DEFAULT.parseLazy(json);
+    }
+
+    public static JsValue parseLazy(byte[] json) {
+        return JsParser.DEFAULT.parseLazy(json);
+    }
+
+    public static JsValue parseLazy(byte[] json, int offset, int length) {
+        return JsParser.DEFAULT.parseLazy(json, offset, length);
+    }
+
+    public static JsRaw raw(String json) {
+        return JsParser.DEFAULT.raw(json);
+    }
+
+    public static JsRaw raw(byte[] json) {
+        return JsParser.DEFAULT.raw(json);
+    }
+
+    public static JsRaw raw(byte[] json, int offset, int length) {
+        return JsParser.DEFAULT.raw(json, offset, length);
+    }
+
+    public static Iterator<JsValue> parseLines(InputStream json) {
+        return JsParser.DEFAULT.parseLines(json);
+    }
+
+    public static Iterator<JsValue> parseLines(Path json) {
+        return JsParser.DEFAULT.parseLines(json);
+    }
+
+    public static Iterator<JsValue> parseLines(ByteBuffer json) {
+        return JsParser.DEFAULT.parseLines(json);
+    }
+
+    public static Stream<JsValue> parseLinesParallel(Path json, int parallelism) {
+        return JsParser.DEFAULT.parseLinesParallel(json, parallelism, true);
+    }
+
+    public static Stream<JsValue> parseLinesParallel(Path json, int parallelism, boolean ordered) {
+        return JsParser.DEFAULT.parseLinesParallel(json, parallelism, ordered);
+    }
+
+    public static JsIncrementalParser incremental(Consumer<JsValue> callback) {
+        return JsParser.DEFAULT.incremental(callback);
+    }
+
+    public static JsIncrementalParser incrementalElements(Consumer<JsValue> callback) {
+        return JsParser.DEFAULT.incrementalElements(callback);
+    }
+
+    public static JsStream stream(String json) {
+        return JsParser.DEFAULT.stream(json);
+    }
+
+    public static JsStream stream(byte[] json) {
+        return JsParser.DEFAULT.stream(json);
+    }
+
+    public static JsStream stream(InputStream json) {
+        return JsParser.DEFAULT.stream(json);
+    }
+
+    public static JsStream stream(Path json) {
+        return JsParser.DEFAULT.stream(json);
     }
 
     public static <T> Reader<T> safeReader(final Reader<T> reader) {
@@ -109,13 +257,86 @@ public class Json {
         return stringify(value);
     }
 
+    public static byte[] toBytes(JsValue value) {
+        return Jackson.generateBytesFromJsValue(value);
+    }
+
+    public static byte[] toBytes(JsValue value, boolean pretty) {
+        if (pretty) {
+            return Jackson.prettifyBytes(value);
+        }
+        return toBytes(value);
+    }
+
+    // the array is streamed as the iterator produces its elements, without building a JsArray
+    public static <T> void writeArray(java.util.Iterator<T> items, Writer<T> writer, OutputStream out) {
+        writeArray(items, writer, out, 0);
+    }
+
+    public static <T> void writeArray(java.util.Iterator<T> items, Writer<T> writer, OutputStream out, int flushEvery) {
+        checkStreamed(items, writer, out, flushEvery);
+        Jackson.writeJsArray(items, writer, out, flushEvery);
+    }
+
+    // newline delimited json (ndjson), one value per line
+    public static <T> void writeLines(java.util.Iterator<T> items, Writer<T> writer, OutputStream out) {
+        writeLines(items, writer, out, 0);
+    }
+
+    public static <T> void writeLines(java.util.Iterator<T> items, Writer<T> writer, OutputStream out, int flushEvery) {
+        checkStreamed(items, writer, out, flushEvery);
+        Jackson.writeJsLines(items, writer, out, flushEvery);
+    }
+
+    private static void checkStreamed(java.util.Iterator<?> items, Writer<?> writer, OutputStream out, int flushEvery) {
+        if (items == null) {
+            throw new IllegalArgumentException("Items can't be null !");
+        }
+        if (writer == null) {
+            throw new IllegalArgumentException("Writer can't be null !");
+        }
+        if (out == null) {
+            throw new IllegalArgumentException("Output can't be null !");
+        }
+        if (flushEvery < 0) {
+            throw new IllegalArgumentException("Flush interval can't be negative !");
+        }
+    }
+
+    // sorted fields and normalized numbers, equal values always give the same bytes
+    public static byte[] toCanonicalBytes(JsValue value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Jackson.writeCanonicalJsValue(value, out);
+        return out.toByteArray();
+    }
+
+    public static void writeCanonicalTo(JsValue value, OutputStream out) {
+        Jackson.writeCanonicalJsValue(value, out);
+    }
+
+    public static void writeTo(JsValue value, OutputStream out) {
+        Jackson.writeJsValue(value, out);
+    }
+
+    public static void writeTo(JsValue value, java.io.Writer out) {
+        Jackson.writeJsValue(value, out);
+    }
+
+    public static void writeTo(JsValue value, ByteBuffer out) {
+        Jackson.writeJsValue(value, out);
+    }
+
     @SuppressWarnings("unchecked")
     public static JsValue wrap(Object o) {
+        // values carrying their serialized form (JsRaw or serialized()) are kept, so their bytes are still copied as is
+        if (o instanceof JsValue && ((JsValue) o).raw() != null) {
+            return (JsValue) o;
+        }
         return Jackson.jsonNodeToJsValue(Jackson.toJson(o));
     }
 
     public static <T> JsResult<T> fromJson(JsValue value, Reader<T> reader) {
-        return reader.read(value);
+        return reader.read(value.materialized());
     }
 
     public static <T> JsResult<T> fromJson(String value, Reader<T> reader) {
@@ -123,7 +344,7 @@ public class Json {
     }
 
     public static <E, T> Validation<E, T> fromJson(JsValue value, Function<JsValue, Validation<E, T>> reader) {
-        return reader.apply(value);
+        return reader.apply(value.materialized());
     }
 
     public static <E, T> Validation<E, T> fromJson(String value, Function<JsValue, Validation<E, T>> reader) {
@@ -142,6 +363,24 @@ public class Json {
         return Jackson.prettify(value);
     }
 
+    public static String prettyPrint(JsValue value, PrettyFormat format) {
+        if (format == null) {
+            throw new IllegalArgumentException("Format can't be null !");
+        }
+        return Jackson.prettify(value, format);
+    }
+
+    public static void writePrettyTo(JsValue value, OutputStream out) {
+        writePrettyTo(value, out, PrettyFormat.DEFAULT);
+    }
+
+    public static void writePrettyTo(JsValue value, OutputStream out, PrettyFormat format) {
+        if (format == null) {
+            throw new IllegalArgumentException("Format can't be null !");
+        }
+        Jackson.writePrettyJsValue(value, out, format);
+    }
+
     public static JsValue fromJsonNode(JsonNode node) {
         return Jackson.jsonNodeToJsValue(node);
     }
@@ -0,0 +1,32 @@
+package org.reactivecouchbase.json;
+
+// receives the structure of a document as it is read, without any JsObject or JsArray being built
+public interface JsonHandler {
+
+    default void startObject() {
+    }
+
+    default void field(String name) {
+    }
+
+    default void endObject() {
+    }
+
+    default void startArray() {
+    }
+
+    default void endArray() {
+    }
+
+    default void value(JsString value) {
+    }
+
+    default void value(JsNumber value) {
+    }
+
+    default void value(JsBoolean value) {
+    }
+
+    default void value(JsNull value) {
+    }
+}
@@ -0,0 +1,128 @@
+package org.reactivecouchbase.json;
+
+import io.vavr.collection.Iterator;
+import org.reactivecouchbase.json.exceptions.JsParseException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+// splits a memory mapped json lines file into chunks cut on newlines, each chunk is read by its own parser
+final class LinesSpliterator implements Spliterator<JsValue> {
+
+    private static final long MAX_CHUNK = Integer.MAX_VALUE;
+
+    private final JsParser engine;
+    private final List<Chunk> chunks;
+    private int current;
+    private final int end;
+    private Iterator<JsValue> values;
+
+    private LinesSpliterator(JsParser engine, List<Chunk> chunks, int from, int to) {
+        this.engine = engine;
+        this.chunks = chunks;
+        this.current = from;
+        this.end = to;
+    }
+
+    static LinesSpliterator of(JsParser engine, Path path, int parallelism) throws IOException {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive !");
+        }
+        List<Chunk> chunks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long target = Math.min(MAX_CHUNK, Math.max(1, (size + parallelism - 1) / parallelism));
+            long start = 0;
+            while (start < size) {
+                long stop = start + target >= size ? size : nextLine(channel, start + target, size);
+                if (stop - start > MAX_CHUNK) {
+                    // a single record bigger than a mapping, cut it anyway and let the parser report it
+                    stop = start + MAX_CHUNK;
+                }
+                chunks.add(new Chunk(start, channel.map(FileChannel.MapMode.READ_ONLY, start, stop - start)));
+                start = stop;
+            }
+        }
+        return new LinesSpliterator(engine, chunks, 0, chunks.size());
+    }
+
+    // position right after the first newline found from the given position
+    private static long nextLine(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = from;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super JsValue> action) {
+        while (current < end) {
+            if (values == null) {
+                values = engine.parseLines(chunks.get(current).buffer.duplicate());
+            }
+            try {
+                if (values.hasNext()) {
+                    action.accept(values.next());
+                    return true;
+                }
+            } catch (JsParseException e) {
+                long start = chunks.get(current).start;
+                throw new JsParseException("Invalid json at line " + e.getLine() + " of the chunk starting at byte " + start, e.getLine(), e.getColumn(), e.getCause());
+            }
+            values = null;
+            current++;
+        }
+        return false;
+    }
+
+    @Override
+    public Spliterator<JsValue> trySplit() {
+        if (values != null || end - current < 2) {
+            return null;
+        }
+        int middle = current + (end - current) / 2;
+        LinesSpliterator prefix = new LinesSpliterator(engine, chunks, current, middle);
+        current = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+
+    private static class Chunk {
+        private final long start;
+        private final MappedByteBuffer buffer;
+
+        private Chunk(long start, MappedByteBuffer buffer) {
+            this.start = start;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package org.reactivecouchbase.json;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import org.reactivecouchbase.json.exceptions.JsParseLimitException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public final class ParseLimits {
+
+    public static final ParseLimits NONE = new ParseLimits(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+    private final int maxDepth;
+    private final int maxStringLength;
+    private final int maxNumberLength;
+    private final int maxFields;
+    private final int maxArrayLength;
+    private final long maxTotalBytes;
+
+    private ParseLimits(int maxDepth, int maxStringLength, int maxNumberLength, int maxFields, int maxArrayLength, long maxTotalBytes) {
+        this.maxDepth = maxDepth;
+        this.maxStringLength = maxStringLength;
+        this.maxNumberLength = maxNumberLength;
+        this.maxFields = maxFields;
+        this.maxArrayLength = maxArrayLength;
+        this.maxTotalBytes = maxTotalBytes;
+    }
+
+    public static ParseLimits none() {
+        return NONE;
+    }
+
+    // nesting of objects and arrays, a scalar root has a depth of 0
+    public ParseLimits withMaxDepth(int maxDepth) {
+        return new ParseLimits(positive(maxDepth), maxStringLength, maxNumberLength, maxFields, maxArrayLength, maxTotalBytes);
+    }
+
+    // in chars, applies to field names too
+    public ParseLimits withMaxStringLength(int maxStringLength) {
+        return new ParseLimits(maxDepth, positive(maxStringLength), maxNumberLength, maxFields, maxArrayLength, maxTotalBytes);
+    }
+
+    public ParseLimits withMaxNumberLength(int maxNumberLength) {
+        return new ParseLimits(maxDepth, maxStringLength, positive(maxNumberLength), maxFields, maxArrayLength, maxTotalBytes);
+    }
+
+    public ParseLimits withMaxFieldsPerObject(int maxFields) {
+        return new ParseLimits(maxDepth, maxStringLength, maxNumberLength, positive(maxFields), maxArrayLength, maxTotalBytes);
+    }
+
+    public ParseLimits withMaxArrayLength(int maxArrayLength) {
+        return new ParseLimits(maxDepth, maxStringLength, maxNumberLength, maxFields, positive(maxArrayLength), maxTotalBytes);
+    }
+
+    // in bytes for binary input, in chars for strings
+    public ParseLimits withMaxTotalBytes(long maxTotalBytes) {
+        return new ParseLimits(maxDepth, maxStringLength, maxNumberLength, maxFields, maxArrayLength, positive(maxTotalBytes));
+    }
+
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    public int maxStringLength() {
+        return maxStringLength;
+    }
+
+    public int maxNumberLength() {
+        return maxNumberLength;
+    }
+
+    public int maxFieldsPerObject() {
+        return maxFields;
+    }
+
+    public int maxArrayLength() {
+        return maxArrayLength;
+    }
+
+    public long maxTotalBytes() {
+        return maxTotalBytes;
+    }
+
+    void checkDepth(JsonParser jp, int depth) {
+        if (depth > maxDepth) {
+            throw exceeded(jp, "depth", maxDepth);
+        }
+    }
+
+    void checkString(JsonParser jp, int length) {
+        if (length > maxStringLength) {
+            throw exceeded(jp, "string length", maxStringLength);
+        }
+    }
+
+    void checkNumber(JsonParser jp, int length) {
+        if (length > maxNumberLength) {
+            throw exceeded(jp, "number length", maxNumberLength);
+        }
+    }
+
+    void checkFields(JsonParser jp, int fields) {
+        if (fields > maxFields) {
+            throw exceeded(jp, "fields per object", maxFields);
+        }
+    }
+
+    void checkArray(JsonParser jp, int length) {
+        if (length > maxArrayLength) {
+            throw exceeded(jp, "array length", maxArrayLength);
+        }
+    }
+
+    // the size is checked before any byte is read when it is known up front
+    void checkTotal(long length) {
+        if (length > maxTotalBytes) {
+            throw new JsParseLimitException("total bytes", maxTotalBytes, 1, 1);
+        }
+    }
+
+    InputStream limit(InputStream in) {
+        if (maxTotalBytes == Long.MAX_VALUE) {
+            return in;
+        }
+        return new LimitedInputStream(in, maxTotalBytes);
+    }
+
+    private static JsParseLimitException exceeded(JsonParser jp, String limit, long max) {
+        JsonLocation location = jp.getTokenLocation();
+        return new JsParseLimitException(limit, max, location.getLineNr(), location.getColumnNr());
+    }
+
+    private static int positive(int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Limit must be positive !");
+        }
+        return value;
+    }
+
+    private static long positive(long value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Limit must be positive !");
+        }
+        return value;
+    }
+
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private final long max;
+        private long read = 0;
+
+        private LimitedInputStream(InputStream in, long max) {
+            super(in);
+            this.max = max;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long n) {
+            read += n;
+            if (read > max) {
+                throw new JsParseLimitException("total bytes", max, -1, -1);
+            }
+        }
+    }
+}
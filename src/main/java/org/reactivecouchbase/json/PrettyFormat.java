@@ -0,0 +1,45 @@
+package org.reactivecouchbase.json;
+
+public final class PrettyFormat {
+
+    // same layout as Jackson's DefaultPrettyPrinter: fields indented by two spaces, arrays on one line
+    public static final PrettyFormat DEFAULT = new PrettyFormat(2, 0);
+
+    private final int indent;
+    private final int lineWidth;
+
+    private PrettyFormat(int indent, int lineWidth) {
+        this.indent = indent;
+        this.lineWidth = lineWidth;
+    }
+
+    public static PrettyFormat standard() {
+        return DEFAULT;
+    }
+
+    // spaces per nesting level
+    public PrettyFormat withIndent(int indent) {
+        return new PrettyFormat(notNegative(indent), lineWidth);
+    }
+
+    // arrays then get one element per line, except arrays of scalars that fit on the current line.
+    // 0 keeps every array on one line
+    public PrettyFormat withLineWidth(int lineWidth) {
+        return new PrettyFormat(indent, notNegative(lineWidth));
+    }
+
+    public int indent() {
+        return indent;
+    }
+
+    public int lineWidth() {
+        return lineWidth;
+    }
+
+    private static int notNegative(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value can't be negative !");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,151 @@
+package org.reactivecouchbase.json;
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// a slice of already serialized UTF-8 json, written verbatim by generators
+final class RawJson implements SerializableString {
+
+    final byte[] bytes;
+    final int offset;
+    final int length;
+    private volatile String value;
+    private volatile byte[] exact;
+
+    RawJson(byte[] bytes, int offset, int length) {
+        this(bytes, offset, length, null);
+    }
+
+    // value is the already known text of the slice, it is then never decoded
+    RawJson(byte[] bytes, int offset, int length, String value) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.value = value;
+    }
+
+    @Override
+    public String getValue() {
+        String current = value;
+        if (current == null) {
+            current = new String(bytes, offset, length, StandardCharsets.UTF_8);
+            value = current;
+        }
+        return current;
+    }
+
+    @Override
+    public int charLength() {
+        return getValue().length();
+    }
+
+    @Override
+    public char[] asQuotedChars() {
+        return JsonStringEncoder.getInstance().quoteAsString(getValue());
+    }
+
+    // Jackson's generators write raw values from this array, so it is never copied on each write: a slice
+    // covering its whole array returns it (nothing writes into it), any other slice is copied once
+    @Override
+    public byte[] asUnquotedUTF8() {
+        if (offset == 0 && length == bytes.length) {
+            return bytes;
+        }
+        byte[] current = exact;
+        if (current == null) {
+            current = Arrays.copyOfRange(bytes, offset, offset + length);
+            exact = current;
+        }
+        return current;
+    }
+
+    @Override
+    public byte[] asQuotedUTF8() {
+        return JsonStringEncoder.getInstance().quoteAsUTF8(getValue());
+    }
+
+    @Override
+    public int appendQuotedUTF8(byte[] buffer, int offset) {
+        return append(asQuotedUTF8(), buffer, offset);
+    }
+
+    @Override
+    public int appendQuoted(char[] buffer, int offset) {
+        char[] quoted = asQuotedChars();
+        if (offset + quoted.length > buffer.length) {
+            return -1;
+        }
+        System.arraycopy(quoted, 0, buffer, offset, quoted.length);
+        return quoted.length;
+    }
+
+    @Override
+    public int appendUnquotedUTF8(byte[] buffer, int offset) {
+        if (offset + length > buffer.length) {
+            return -1;
+        }
+        System.arraycopy(bytes, this.offset, buffer, offset, length);
+        return length;
+    }
+
+    @Override
+    public int appendUnquoted(char[] buffer, int offset) {
+        String str = getValue();
+        if (offset + str.length() > buffer.length) {
+            return -1;
+        }
+        str.getChars(0, str.length(), buffer, offset);
+        return str.length();
+    }
+
+    @Override
+    public int writeQuotedUTF8(OutputStream out) throws IOException {
+        byte[] quoted = asQuotedUTF8();
+        out.write(quoted);
+        return quoted.length;
+    }
+
+    @Override
+    public int writeUnquotedUTF8(OutputStream out) throws IOException {
+        out.write(bytes, offset, length);
+        return length;
+    }
+
+    @Override
+    public int putQuotedUTF8(ByteBuffer buffer) throws IOException {
+        byte[] quoted = asQuotedUTF8();
+        if (quoted.length > buffer.remaining()) {
+            return -1;
+        }
+        buffer.put(quoted);
+        return quoted.length;
+    }
+
+    @Override
+    public int putUnquotedUTF8(ByteBuffer buffer) throws IOException {
+        if (length > buffer.remaining()) {
+            return -1;
+        }
+        buffer.put(bytes, offset, length);
+        return length;
+    }
+
+    private static int append(byte[] source, byte[] buffer, int offset) {
+        if (offset + source.length > buffer.length) {
+            return -1;
+        }
+        System.arraycopy(source, 0, buffer, offset, source.length);
+        return source.length;
+    }
+
+    @Override
+    public String toString() {
+        return getValue();
+    }
+}
@@ -0,0 +1,28 @@
+package org.reactivecouchbase.json;
+
+import io.vavr.collection.Seq;
+
+// a JsArray carrying its own serialized form, copied as is by generators instead of walking the elements again
+final class SerializedJsArray extends JsArray {
+
+    private final RawJson raw;
+
+    SerializedJsArray(Seq<JsValue> values, RawJson raw) {
+        super(values);
+        this.raw = raw;
+    }
+
+    @Override
+    RawJson raw() {
+        return raw;
+    }
+
+    @Override
+    String toJsonString() {
+        return raw.getValue();
+    }
+
+    private Object writeReplace() {
+        return new JsArray(values);
+    }
+}
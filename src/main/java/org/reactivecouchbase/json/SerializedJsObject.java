@@ -0,0 +1,28 @@
+package org.reactivecouchbase.json;
+
+import io.vavr.collection.Map;
+
+// a JsObject carrying its own serialized form, copied as is by generators instead of walking the fields again
+final class SerializedJsObject extends JsObject {
+
+    private final RawJson raw;
+
+    SerializedJsObject(Map<String, JsValue> values, RawJson raw) {
+        super(values);
+        this.raw = raw;
+    }
+
+    @Override
+    RawJson raw() {
+        return raw;
+    }
+
+    @Override
+    String toJsonString() {
+        return raw.getValue();
+    }
+
+    private Object writeReplace() {
+        return new JsObject(values);
+    }
+}
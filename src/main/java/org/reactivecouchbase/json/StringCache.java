@@ -0,0 +1,148 @@
+package org.reactivecouchbase.json;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// a bounded cache sharing JsString instances for short, repeated string values.
+// slots are grouped by two, a hit moves the entry first and a miss evicts the second (least recently used) one
+public class StringCache {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final int DEFAULT_MAX_LENGTH = 32;
+
+    private final AtomicReferenceArray<JsString> slots;
+    private final int mask;
+    private final int maxLength;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public StringCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+    }
+
+    public StringCache(int capacity, int maxLength) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2 !");
+        }
+        if (maxLength < 0) {
+            throw new IllegalArgumentException("Max length can't be negative !");
+        }
+        int size = Integer.highestOneBit(Math.min(capacity, 1 << 30));
+        if (size < capacity) {
+            size = size << 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = (size - 1) & ~1;
+        this.maxLength = maxLength;
+    }
+
+    public boolean accepts(int length) {
+        return length <= maxLength;
+    }
+
+    public JsString intern(String value) {
+        if (!accepts(value.length())) {
+            return new JsString(value);
+        }
+        int slot = spread(value.hashCode()) & mask;
+        JsString first = slots.get(slot);
+        if (first != null && first.value.equals(value)) {
+            hits.increment();
+            return first;
+        }
+        JsString second = slots.get(slot + 1);
+        if (second != null && second.value.equals(value)) {
+            hits.increment();
+            promote(slot, first, second);
+            return second;
+        }
+        return insert(slot, first, new JsString(value));
+    }
+
+    public JsString intern(char[] chars, int offset, int length) {
+        if (!accepts(length)) {
+            return new JsString(new String(chars, offset, length));
+        }
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int slot = spread(hash) & mask;
+        JsString first = slots.get(slot);
+        if (sameChars(first, hash, chars, offset, length)) {
+            hits.increment();
+            return first;
+        }
+        JsString second = slots.get(slot + 1);
+        if (sameChars(second, hash, chars, offset, length)) {
+            hits.increment();
+            promote(slot, first, second);
+            return second;
+        }
+        return insert(slot, first, new JsString(new String(chars, offset, length)));
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    public int maxLength() {
+        return maxLength;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public double hitRate() {
+        long h = hits();
+        long total = h + misses();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    // concurrent updates may lose an entry, which only costs a later miss
+    private void promote(int slot, JsString first, JsString second) {
+        slots.lazySet(slot, second);
+        slots.lazySet(slot + 1, first);
+    }
+
+    private JsString insert(int slot, JsString first, JsString value) {
+        misses.increment();
+        slots.lazySet(slot + 1, first);
+        slots.lazySet(slot, value);
+        return value;
+    }
+
+    private static boolean sameChars(JsString candidate, int hash, char[] chars, int offset, int length) {
+        if (candidate == null || candidate.value.length() != length || candidate.value.hashCode() != hash) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (candidate.value.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        return "StringCache(capacity=" + capacity() + ", maxLength=" + maxLength + ", hits=" + hits() + ", misses=" + misses() + ")";
+    }
+}
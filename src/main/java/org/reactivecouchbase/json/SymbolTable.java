@@ -0,0 +1,107 @@
+package org.reactivecouchbase.json;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// a bounded, lossy table sharing one String instance per field name across parsed documents.
+// each name hashes to a single slot, a colliding name simply replaces the previous one
+public class SymbolTable {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final SymbolTable SHARED = new SymbolTable(DEFAULT_CAPACITY);
+
+    private final AtomicReferenceArray<String> slots;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public SymbolTable(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive !");
+        }
+        int size = Integer.highestOneBit(Math.min(capacity, 1 << 30));
+        if (size < capacity) {
+            size = size << 1;
+        }
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public static SymbolTable shared() {
+        return SHARED;
+    }
+
+    public String canonicalize(String name) {
+        int slot = spread(name.hashCode()) & mask;
+        String current = slots.get(slot);
+        if (current != null && (current == name || current.equals(name))) {
+            hits.increment();
+            return current;
+        }
+        misses.increment();
+        slots.lazySet(slot, name);
+        return name;
+    }
+
+    public String canonicalize(char[] chars, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int slot = spread(hash) & mask;
+        String current = slots.get(slot);
+        if (current != null && current.length() == length && current.hashCode() == hash && sameChars(current, chars, offset)) {
+            hits.increment();
+            return current;
+        }
+        misses.increment();
+        String name = new String(chars, offset, length);
+        slots.lazySet(slot, name);
+        return name;
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public double hitRate() {
+        long h = hits();
+        long total = h + misses();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+        hits.reset();
+        misses.reset();
+    }
+
+    private static boolean sameChars(String current, char[] chars, int offset) {
+        for (int i = 0; i < current.length(); i++) {
+            if (current.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        return "SymbolTable(capacity=" + capacity() + ", hits=" + hits() + ", misses=" + misses() + ")";
+    }
+}
@@ -0,0 +1,142 @@
+package org.reactivecouchbase.json;
+
+import java.security.MessageDigest;
+
+// streaming XXH64 (seed 0) as a MessageDigest, the 8 bytes of the hash are returned big endian like xxhsum prints them
+final class XxHash64 extends MessageDigest {
+
+    static final String ALGORITHM = "XXH64";
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    // input is consumed by stripes of 32 bytes, the last incomplete one waits in buffer
+    private final byte[] buffer = new byte[32];
+    private int buffered;
+    private long total;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+
+    XxHash64() {
+        super(ALGORITHM);
+        engineReset();
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return 8;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        buffer[buffered++] = input;
+        total++;
+        if (buffered == 32) {
+            stripe(buffer, 0);
+            buffered = 0;
+        }
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        total += len;
+        int end = offset + len;
+        if (buffered > 0) {
+            int missing = Math.min(32 - buffered, len);
+            System.arraycopy(input, offset, buffer, buffered, missing);
+            buffered += missing;
+            offset += missing;
+            if (buffered < 32) {
+                return;
+            }
+            stripe(buffer, 0);
+            buffered = 0;
+        }
+        while (end - offset >= 32) {
+            stripe(input, offset);
+            offset += 32;
+        }
+        buffered = end - offset;
+        System.arraycopy(input, offset, buffer, 0, buffered);
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        long hash;
+        if (total >= 32) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = merge(hash, v1);
+            hash = merge(hash, v2);
+            hash = merge(hash, v3);
+            hash = merge(hash, v4);
+        } else {
+            hash = PRIME5;
+        }
+        hash += total;
+        int position = 0;
+        while (position + 8 <= buffered) {
+            hash ^= round(0, readLong(buffer, position));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            position += 8;
+        }
+        if (position + 4 <= buffered) {
+            hash ^= (readInt(buffer, position) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            position += 4;
+        }
+        while (position < buffered) {
+            hash ^= (buffer[position++] & 0xFF) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+        }
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        engineReset();
+        byte[] digest = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            digest[i] = (byte) hash;
+            hash >>>= 8;
+        }
+        return digest;
+    }
+
+    @Override
+    protected void engineReset() {
+        v1 = PRIME1 + PRIME2;
+        v2 = PRIME2;
+        v3 = 0L;
+        v4 = -PRIME1;
+        buffered = 0;
+        total = 0L;
+    }
+
+    private void stripe(byte[] input, int offset) {
+        v1 = round(v1, readLong(input, offset));
+        v2 = round(v2, readLong(input, offset + 8));
+        v3 = round(v3, readLong(input, offset + 16));
+        v4 = round(v4, readLong(input, offset + 24));
+    }
+
+    private static long round(long accumulator, long input) {
+        return Long.rotateLeft(accumulator + input * PRIME2, 31) * PRIME1;
+    }
+
+    private static long merge(long hash, long accumulator) {
+        return (hash ^ round(0, accumulator)) * PRIME1 + PRIME4;
+    }
+
+    private static long readLong(byte[] input, int offset) {
+        return (readInt(input, offset) & 0xFFFFFFFFL) | ((long) readInt(input, offset + 4) << 32);
+    }
+
+    private static int readInt(byte[] input, int offset) {
+        return (input[offset] & 0xFF) | (input[offset + 1] & 0xFF) << 8 | (input[offset + 2] & 0xFF) << 16 | (input[offset + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,27 @@
+package org.reactivecouchbase.json.exceptions;
+
+public class JsParseException extends JsException {
+
+    private final long line;
+    private final long column;
+
+    public JsParseException(String s, long line, long column) {
+        super(s);
+        this.line = line;
+        this.column = column;
+    }
+
+    public JsParseException(String s, long line, long column, Throwable throwable) {
+        super(s, throwable);
+        this.line = line;
+        this.column = column;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public long getColumn() {
+        return column;
+    }
+}
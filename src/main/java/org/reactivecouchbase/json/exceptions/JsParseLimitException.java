@@ -0,0 +1,21 @@
+package org.reactivecouchbase.json.exceptions;
+
+public class JsParseLimitException extends JsParseException {
+
+    private final String limit;
+    private final long max;
+
+    public JsParseLimitException(String limit, long max, long line, long column) {
+        super("Parse limit exceeded: " + limit + " is limited to " + max, line, column);
+        this.limit = limit;
+        this.max = max;
+    }
+
+    public String getLimit() {
+        return limit;
+    }
+
+    public long getMax() {
+        return max;
+    }
+}
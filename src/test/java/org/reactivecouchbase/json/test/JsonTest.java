@@ -2,10 +2,19 @@ package org.reactivecouchbase.json.test;
 
 import org.junit.Assert;
 import org.junit.Test;
+import io.vavr.collection.Array;
+import io.vavr.collection.Iterator;
 import org.reactivecouchbase.json.*;
+import org.reactivecouchbase.json.exceptions.JsParseException;
+import org.reactivecouchbase.json.exceptions.JsParseLimitException;
 import org.reactivecouchbase.json.mapping.*;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import static org.reactivecouchbase.json.Syntax.*;
 import static org.reactivecouchbase.json.mapping.ReaderConstraints.*;
@@ -568,6 +577,673 @@ public class JsonTest {
     }
 
 
+    @Test
+    public void parseTest() {
+        JsValue value = Json.parse("{\"name\":\"John\",\"tags\":[\"a\",1,2.5,true,false,null,{}],\"nested\":{\"empty\":[]}}");
+        JsObject expected = Json.obj(
+                $("name", "John"),
+                $("tags", Json.arr("a", 1, 2.5, true, false, nill(), Json.obj())),
+                $("nested", Json.obj($("empty", Json.arr())))
+        );
+        Assert.assertEquals(expected, value);
+        Assert.assertEquals(expected, Json.fromJsonNode(Json.toJackson(expected)));
+        Assert.assertEquals(string("hello"), Json.parse("\"hello\""));
+        Assert.assertEquals(number(42), Json.parse("42"));
+    }
+
+    @Test
+    public void parseBytesTest() throws Exception {
+        JsObject expected = Json.obj(
+                $("name", "J\u00e9r\u00f4me"),
+                $("tags", Json.arr("a", 1, true))
+        );
+        byte[] bytes = Json.toBytes(expected);
+        Assert.assertEquals(Json.stringify(expected), new String(bytes, StandardCharsets.UTF_8));
+        Assert.assertEquals(expected, Json.parse(bytes));
+        Assert.assertEquals(expected, Json.parse(new ByteArrayInputStream(bytes)));
+        Assert.assertEquals(expected, Json.parse(ByteBuffer.wrap(bytes)));
+
+        byte[] padded = new byte[bytes.length + 4];
+        System.arraycopy(bytes, 0, padded, 2, bytes.length);
+        Assert.assertEquals(expected, Json.parse(padded, 2, bytes.length));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).flip();
+        Assert.assertEquals(expected, Json.parse(direct));
+        Assert.assertEquals(bytes.length, direct.remaining());
+
+        Assert.assertEquals(expected, Json.parse(Json.toBytes(expected, true)));
+    }
+
+    @Test
+    public void parseFileTest() throws Exception {
+        JsObject expected = Json.obj(
+                $("key1", "value1"),
+                $("key2", Json.arr(1, 2, 3))
+        );
+        Path file = Files.createTempFile("json-lib", ".json");
+        try {
+            Files.write(file, Json.toBytes(expected, true));
+            Assert.assertEquals(expected, Json.parse(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void parseLinesTest() {
+        String lines = "{\"id\":1}\n{\"id\":2}\n\n[3]\n{\"id\":4,}\n{\"id\":5}\n";
+        Iterator<JsValue> values = Json.parseLines(new ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(Json.obj($("id", 1)), values.next());
+        Assert.assertEquals(Json.obj($("id", 2)), values.next());
+        Assert.assertEquals(Json.arr(3), values.next());
+        try {
+            values.next();
+            Assert.fail("the fifth line is not valid json");
+        } catch (JsParseException e) {
+            Assert.assertEquals(5, e.getLine());
+        }
+        Assert.assertFalse(values.hasNext());
+    }
+
+    @Test
+    public void streamTest() {
+        String json = "{\"meta\":{\"count\":3,\"tags\":[\"a\"]},\"items\":[{\"id\":1},{\"id\":2},{\"id\":3,\"sub\":[{\"id\":4}]}]}";
+        java.util.List<JsValue> items = new java.util.ArrayList<>();
+        java.util.List<JsValue> ids = new java.util.ArrayList<>();
+        java.util.List<JsValue> counts = new java.util.ArrayList<>();
+        java.util.List<JsValue> second = new java.util.ArrayList<>();
+        Json.stream(json)
+                .on("items[*]", items::add)
+                .on("items[*].id", ids::add)
+                .on("meta.count", counts::add)
+                .on("items[1]", second::add)
+                .run();
+        Assert.assertEquals(3, items.size());
+        Assert.assertEquals(Json.obj($("id", 1)), items.get(0));
+        Assert.assertEquals(Array.of(number(1), number(2), number(3)), Array.ofAll(ids));
+        Assert.assertEquals(Array.of(number(3)), Array.ofAll(counts));
+        Assert.assertEquals(Array.of(Json.obj($("id", 2))), Array.ofAll(second));
+    }
+
+    @Test
+    public void parseLazyTest() {
+        String json = "{\"tenant\":{\"id\":\"t1\"},\"items\":[{\"id\":1},{\"id\":2}],\"count\":2}";
+        JsValue lazy = Json.parseLazy(json);
+        Assert.assertTrue(lazy.is(JsRaw.class));
+        Assert.assertTrue(lazy.asOpt(JsObject.class).isDefined());
+        // nested containers stay raw until they are reached
+        Assert.assertTrue(lazy.field("tenant").is(JsRaw.class));
+        Assert.assertEquals(json, Json.stringify(lazy));
+        Assert.assertEquals(json, new String(Json.toBytes(lazy), StandardCharsets.UTF_8));
+        Assert.assertEquals("t1", lazy.field("tenant").field("id").asString());
+        Assert.assertEquals(Integer.valueOf(2), lazy.querySelector("items[1].id").asInteger());
+        Assert.assertEquals(Json.parse(json), lazy);
+        Assert.assertEquals(lazy, Json.parse(json));
+        Assert.assertEquals(Json.parse(json).hashCode(), lazy.hashCode());
+        Assert.assertEquals(Json.parse(json), Json.parse(Json.prettyPrint(lazy)));
+        Assert.assertTrue(lazy.deepEquals(Json.parse(json)));
+        Assert.assertEquals(Json.parse(json), Json.parse(json).asObject().deepMerge(lazy.asObject()));
+        Assert.assertEquals(number(42), Json.parseLazy(" 42 "));
+        // nested containers keep their own bytes, spacing included, and hold plain collections
+        JsValue spaced = Json.parseLazy("{ \"items\" : [ {\"id\" : 1} , 2 ] }");
+        Assert.assertEquals("[ {\"id\" : 1} , 2 ]", Json.stringify(spaced.field("items")));
+        Assert.assertEquals("{\"id\" : 1}", new String(Json.toBytes(spaced.field("items").get(0)), StandardCharsets.UTF_8));
+        Assert.assertTrue(spaced.as(JsObject.class).values instanceof io.vavr.collection.HashMap);
+        // the caller's array can be reused once parsed
+        byte[] buffer = "{\"a\":1}".getBytes(StandardCharsets.UTF_8);
+        JsValue fromBuffer = Json.parseLazy(buffer);
+        buffer[5] = '2';
+        Assert.assertEquals("{\"a\":1}", Json.stringify(fromBuffer));
+        Assert.assertEquals(number(1), fromBuffer.field("a"));
+        // the bytes are written verbatim later on, so malformed parts are reported right away
+        for (String invalid : new String[]{"{\"a\":{\"b\":[1,]}}", "[1, tru]", "{\"a\":1} x", "[] []", "[{}"}) {
+            try {
+                Json.parseLazy(invalid);
+                Assert.fail("Invalid json accepted : " + invalid);
+            } catch (JsParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void rawTest() {
+        // fragments are only checked when created, the limits applied when reading them show they are never read
+        JsParser parser = new JsParser().withLimits(ParseLimits.none().withMaxFieldsPerObject(1));
+        JsRaw first = parser.raw("{\"id\":1,\"name\":\"a\"}");
+        JsRaw second = parser.raw(" {\"id\":2,\"name\":\"b\"}\n".getBytes(StandardCharsets.UTF_8));
+        JsObject response = Json.obj().with("products", Json.arr(first, second, parser.raw("3")));
+        Assert.assertTrue(response.field("products").get(0).is(JsRaw.class));
+        Assert.assertEquals("{\"products\":[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"},3]}", Json.stringify(response));
+        Assert.assertEquals("{\"products\":[{\"id\":1,\"name\":\"a\"},{\"id\":2,\"name\":\"b\"},3]}", new String(Json.toBytes(response), StandardCharsets.UTF_8));
+        try {
+            first.field("id");
+            Assert.fail("Limits not applied on first access");
+        } catch (JsParseLimitException e) {
+            // expected
+        }
+        JsRaw fragment = Json.raw("{\"id\":1,\"tags\":[\"x\"]}");
+        Assert.assertEquals(number(1), fragment.field("id"));
+        Assert.assertEquals(Json.parse("{\"tags\":[\"x\"],\"id\":1}"), fragment);
+        Assert.assertEquals(string("x"), Json.raw("\"x\"").value());
+        Assert.assertEquals(Integer.valueOf(3), Json.raw("3").as(Integer.class));
+        for (String invalid : new String[]{"", "{\"a\":}", "1 2", "tru"}) {
+            try {
+                Json.raw(invalid);
+                Assert.fail("Invalid json accepted : " + invalid);
+            } catch (JsParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void projectionTest() {
+        String json = "{\"tenant\":{\"id\":\"t1\",\"name\":\"Tenant\"},\"headers\":{\"traceId\":\"abc\",\"other\":[1,2]},\"items\":[{\"id\":1},{\"id\":2,\"x\":true},{\"id\":3}],\"body\":{\"big\":[1,2,3]}}";
+        JsValue projected = Json.parse(json, "tenant.id", "headers.traceId", "items[1].id");
+        Assert.assertEquals(Json.obj(
+                $("tenant", Json.obj($("id", "t1"))),
+                $("headers", Json.obj($("traceId", "abc"))),
+                $("items", Json.arr(nill(), Json.obj($("id", 2))))
+        ), projected);
+        Assert.assertEquals("t1", projected.querySelector("tenant.id").asString());
+        Assert.assertEquals(Integer.valueOf(2), projected.querySelector("items[1].id").asInteger());
+        Assert.assertEquals(Json.obj($("items", Json.arr(Json.obj($("id", 1)), Json.obj($("id", 2)), Json.obj($("id", 3))))),
+                Json.parse(json, "items[*].id"));
+        // what follows the root is checked like it is by a full parse
+        for (String invalid : new String[]{json + " x", "{\"a\":1} ]", "1 ]", "\"abc"}) {
+            try {
+                Json.parse(invalid, "tenant.id");
+                Assert.fail("Invalid json accepted : " + invalid);
+            } catch (JsParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void symbolTableTest() {
+        SymbolTable symbols = new SymbolTable(64);
+        JsParser parser = JsParser.DEFAULT.withSymbolTable(symbols);
+        JsObject first = parser.parse("{\"status\":\"ok\"}").asObject();
+        JsObject second = parser.parse("{\"status\":\"ko\"}").asObject();
+        Assert.assertSame(first.fieldsSet().head(), second.fieldsSet().head());
+        Assert.assertEquals(1, symbols.hits());
+        Assert.assertEquals(1, symbols.misses());
+        Assert.assertEquals(0.5, symbols.hitRate(), 0.0);
+        Assert.assertSame(symbols.canonicalize("status"), symbols.canonicalize("status".toCharArray(), 0, 6));
+
+        // the native engine decodes names to chars, the table saves building a String for each of them
+        Assert.assertNull(JsParser.DEFAULT.symbolTable());
+        JsParser plain = JsParser.DEFAULT.withEngine(JsParser.Engine.NATIVE);
+        byte[] json = "[{\"status\":\"ok\"},{\"status\":\"ko\"}]".getBytes(StandardCharsets.UTF_8);
+        JsArray withoutTable = plain.parse(json).asArray();
+        Assert.assertNotSame(withoutTable.get(0).asObject().fieldsSet().head(), withoutTable.get(1).asObject().fieldsSet().head());
+        SymbolTable nativeSymbols = new SymbolTable(64);
+        JsArray withTable = plain.withSymbolTable(nativeSymbols).parse(json).asArray();
+        Assert.assertSame(withTable.get(0).asObject().fieldsSet().head(), withTable.get(1).asObject().fieldsSet().head());
+        Assert.assertEquals(1, nativeSymbols.hits());
+        Assert.assertEquals(1, nativeSymbols.misses());
+    }
+
+    @Test
+    public void stringCacheTest() {
+        StringCache strings = new StringCache(64, 8);
+        JsParser parser = JsParser.DEFAULT.withStringCache(strings);
+        JsArray values = parser.parse("[\"FR\",\"US\",\"FR\",\"a long string value\",\"a long string value\"]").asArray();
+        Assert.assertSame(values.get(0), values.get(2));
+        Assert.assertNotSame(values.get(3), values.get(4));
+        Assert.assertEquals(values.get(3), values.get(4));
+        Assert.assertEquals(1, strings.hits());
+        Assert.assertEquals(2, strings.misses());
+        Assert.assertSame(parser.parse("\"US\""), values.get(1));
+    }
+
+    @Test
+    public void parseLinesParallelTest() throws Exception {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            lines.append(Json.stringify(Json.obj($("id", i), $("tags", Json.arr("a", "b"))))).append("\n");
+        }
+        Path file = Files.createTempFile("json-lib", ".ndjson");
+        try {
+            Files.write(file, lines.toString().getBytes(StandardCharsets.UTF_8));
+            java.util.List<Integer> ids = Json.parseLinesParallel(file, 4)
+                    .map(value -> value.field("id").asInteger())
+                    .collect(java.util.stream.Collectors.toList());
+            Assert.assertEquals(1000, ids.size());
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertEquals(Integer.valueOf(i), ids.get(i));
+            }
+            Assert.assertEquals(1000, Json.parseLinesParallel(file, 3, false).count());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void incrementalParserTest() {
+        byte[] values = "{\"id\":1,\"s\":\"a \\\"}\"} [1,[2]] \"str\" 42 true\n".getBytes(StandardCharsets.UTF_8);
+        java.util.List<JsValue> received = new java.util.ArrayList<>();
+        JsIncrementalParser parser = Json.incremental(received::add);
+        for (byte b : values) {
+            parser.feed(new byte[]{b});
+        }
+        parser.endOfInput();
+        Assert.assertEquals(Array.of(Json.obj($("id", 1), $("s", "a \"}")), Json.arr(1, Json.arr(2)), string("str"), number(42), bool(true)), Array.ofAll(received));
+
+        java.util.List<JsValue> elements = new java.util.ArrayList<>();
+        JsIncrementalParser elementsParser = Json.incrementalElements(elements::add);
+        elementsParser.feed(ByteBuffer.wrap("[{\"id\":1},{\"i".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(1, elements.size());
+        elementsParser.feed("d\":2}, 3".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(2, elements.size());
+        elementsParser.feed("]".getBytes(StandardCharsets.UTF_8)).endOfInput();
+        Assert.assertEquals(Array.of(Json.obj($("id", 1)), Json.obj($("id", 2)), number(3)), Array.ofAll(elements));
+
+        for (String invalid : new String[]{"[1 2,,3]", "[1,]", "[,1]", "[1\"a\"]", "[{}{}]", "[1}", "[1:2]"}) {
+            try {
+                Json.incrementalElements(v -> { }).feed(invalid.getBytes(StandardCharsets.UTF_8)).endOfInput();
+                Assert.fail("Invalid json accepted : " + invalid);
+            } catch (JsParseException e) {
+                // expected
+            }
+        }
+
+        java.util.List<JsValue> beforeFailure = new java.util.ArrayList<>();
+        JsIncrementalParser failing = Json.incrementalElements(beforeFailure::add);
+        try {
+            failing.feed("[1, 2 3".getBytes(StandardCharsets.UTF_8));
+            Assert.fail("Invalid json accepted");
+        } catch (JsParseException e) {
+            // expected
+        }
+        try {
+            failing.feed("]".getBytes(StandardCharsets.UTF_8));
+            Assert.fail("Failed parser accepted more input");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            failing.endOfInput();
+            Assert.fail("Failed parser accepted end of input");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertEquals(Array.of(number(1), number(2)), Array.ofAll(beforeFailure));
+    }
+
+    @Test
+    public void handlerTest() {
+        final StringBuilder events = new StringBuilder();
+        final BigDecimal[] sum = {BigDecimal.ZERO};
+        Json.parse("{\"events\":[{\"amount\":1.5},{\"amount\":2,\"ok\":true,\"tag\":null,\"name\":\"x\"}]}", new JsonHandler() {
+            private String field;
+
+            @Override
+            public void startObject() {
+                events.append("{");
+            }
+
+            @Override
+            public void endObject() {
+                events.append("}");
+            }
+
+            @Override
+            public void startArray() {
+                events.append("[");
+            }
+
+            @Override
+            public void endArray() {
+                events.append("]");
+            }
+
+            @Override
+            public void field(String name) {
+                field = name;
+                events.append(name).append(":");
+            }
+
+            @Override
+            public void value(JsNumber value) {
+                events.append("n");
+                if ("amount".equals(field)) {
+                    sum[0] = sum[0].add(value.value);
+                }
+            }
+
+            @Override
+            public void value(JsString value) {
+                events.append("s");
+            }
+
+            @Override
+            public void value(JsBoolean value) {
+                events.append("b");
+            }
+
+            @Override
+            public void value(JsNull value) {
+                events.append("0");
+            }
+        });
+        Assert.assertEquals("{events:[{amount:n}{amount:nok:btag:0name:s}]}", events.toString());
+        Assert.assertEquals(0, new BigDecimal("3.5").compareTo(sum[0]));
+    }
+
+    @Test
+    public void parseLimitsTest() {
+        ParseLimits limits = ParseLimits.none().withMaxDepth(3).withMaxStringLength(5).withMaxNumberLength(4)
+                .withMaxFieldsPerObject(2).withMaxArrayLength(3).withMaxTotalBytes(64);
+        Assert.assertEquals(Json.obj($("a", Json.arr(1, 2, 3)), $("b", "abcde")), Json.parse("{\"a\":[1,2,3],\"b\":\"abcde\"}", limits));
+        assertLimit("depth", () -> Json.parse("[[[[1]]]]", limits));
+        assertLimit("string length", () -> Json.parse("[\"abcdef\"]", limits));
+        assertLimit("string length", () -> Json.parse("{\"abcdef\":1}", limits));
+        assertLimit("number length", () -> Json.parse("12345", limits));
+        assertLimit("fields per object", () -> Json.parse("{\"a\":1,\"b\":2,\"c\":3}", limits));
+        assertLimit("array length", () -> Json.parse("[1,2,3,4]", limits));
+        assertLimit("total bytes", () -> Json.parse(new byte[65], limits));
+        assertLimit("total bytes", () -> Json.parse(new ByteArrayInputStream(("[" + String.join(",", java.util.Collections.nCopies(40, "1")) + "]").getBytes(StandardCharsets.UTF_8)), ParseLimits.none().withMaxTotalBytes(64)));
+        assertLimit("array length", () -> JsParser.DEFAULT.withLimits(limits).parse("[1,2,3,4]", new JsonHandler() { }));
+        assertLimit("fields per object", () -> JsParser.DEFAULT.withLimits(limits).parseLazy("{\"a\":1,\"b\":2,\"c\":3}").field("c"));
+        assertLimit("array length", () -> JsParser.DEFAULT.withLimits(limits).parseLazy("[1,2,3,4]").asArray().size());
+        assertLimit("depth", () -> JsParser.DEFAULT.withLimits(limits).parseLazy("[[[[1]]]]"));
+        // values still being received are bounded too, without waiting for their end
+        byte[] chunk = new byte[1024];
+        java.util.Arrays.fill(chunk, (byte) ' ');
+        chunk[0] = '[';
+        assertLimit("total bytes", () -> JsParser.DEFAULT.withLimits(ParseLimits.none().withMaxTotalBytes(100)).incremental(v -> { }).feed(chunk));
+        assertLimit("depth", () -> JsParser.DEFAULT.withLimits(limits).incrementalElements(v -> { }).feed("[[[[[".getBytes(StandardCharsets.UTF_8)));
+        // deep nesting fails on the limit instead of blowing the stack
+        StringBuilder deep = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            deep.append('[');
+        }
+        assertLimit("depth", () -> Json.parse(deep.toString(), ParseLimits.none().withMaxDepth(1000)));
+    }
+
+    private static void assertLimit(String limit, Runnable parse) {
+        try {
+            parse.run();
+            Assert.fail("Limit on " + limit + " not enforced");
+        } catch (JsParseLimitException e) {
+            Assert.assertEquals(limit, e.getLimit());
+        }
+    }
+
+    @Test
+    public void wideDocumentTest() {
+        int width = 20000;
+        StringBuilder array = new StringBuilder("[");
+        StringBuilder object = new StringBuilder("{");
+        for (int i = 0; i < width; i++) {
+            array.append(i == 0 ? "" : ",").append(i % 3 == 0 ? "\"s" + i + "\"" : String.valueOf(i));
+            object.append(i == 0 ? "" : ",").append("\"k").append(i).append("\":").append(i);
+        }
+        String arrayJson = array.append("]").toString();
+        String objectJson = object.append(",\"k0\":-1}").toString();
+        for (JsParser.Engine engine : JsParser.Engine.values()) {
+            JsParser parser = JsParser.DEFAULT.withEngine(engine);
+            // elements keep their order through parse and write
+            JsArray parsedArray = parser.parse(arrayJson).asArray();
+            Assert.assertEquals(width, parsedArray.size());
+            Assert.assertEquals(string("s3"), parsedArray.get(3));
+            Assert.assertEquals(number(width - 1), parsedArray.get(width - 1));
+            Assert.assertEquals(arrayJson, Json.stringify(parsedArray));
+            Assert.assertEquals(arrayJson, new String(Json.toBytes(parsedArray), StandardCharsets.UTF_8));
+            // fields are unordered, membership and values are checked, a duplicate key keeps its last value
+            JsObject parsedObject = parser.parse(objectJson).asObject();
+            Assert.assertEquals(width, parsedObject.size());
+            Assert.assertEquals(number(-1), parsedObject.field("k0"));
+            for (int i = 1; i < width; i++) {
+                Assert.assertEquals(number(i), parsedObject.field("k" + i));
+            }
+            Assert.assertEquals(parsedObject, parser.parse(Json.toBytes(parsedObject)));
+            Assert.assertEquals(Json.stringify(parsedObject), Json.stringify(parser.parse(Json.stringify(parsedObject))));
+        }
+    }
+
+    @Test
+    public void deepDocumentTest() {
+        int depth = 100000;
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            builder.append("{\"a\":[");
+        }
+        builder.append("1");
+        for (int i = 0; i < depth; i++) {
+            builder.append("]}");
+        }
+        String json = builder.toString();
+        JsValue value = Json.parse(json);
+        Assert.assertEquals(json, Json.stringify(value));
+        Assert.assertEquals(json, new String(Json.toBytes(value), StandardCharsets.UTF_8));
+        Assert.assertTrue(value.deepEquals(Json.parse(json)));
+        Assert.assertFalse(value.deepEquals(Json.parse(json.replace("[1]", "[2]"))));
+        JsObject deep = Json.obj();
+        for (int i = 0; i < depth; i++) {
+            deep = Json.obj($("a", deep), $("i", i));
+        }
+        JsObject merged = deep.deepMerge(deep);
+        Assert.assertTrue(merged.deepEquals(deep));
+        Assert.assertEquals(depth, merged.fields("i").size());
+    }
+
+    @Test
+    public void nativeEngineTest() {
+        JsParser jackson = JsParser.DEFAULT.withEngine(JsParser.Engine.JACKSON);
+        JsParser parser = JsParser.DEFAULT.withEngine(JsParser.Engine.NATIVE);
+        String json = "{\"id\":123456789012345678901,\"n\":-12.50e+3,\"small\":-7,\"name\":\"J\\u00e9r\\u00f4me \\\"\\n\",\"utf8\":\"\u00e9t\u00e9\",\"ok\":true,\"no\":false,\"nothing\":null,\"list\":[1,[],{},[0.5]]}";
+        Assert.assertEquals(jackson.parse(json), parser.parse(json));
+        Assert.assertEquals(jackson.parse(json), parser.parse(json.getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(jackson.parse(json), parser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))));
+        for (String invalid : new String[]{"", "[1,]", "{\"a\" 1}", "01", "1.", "\"abc", "truex", "{} x", "[1}"}) {
+            // every engine reports malformed input the same way
+            for (JsParser engine : new JsParser[]{jackson, parser}) {
+                try {
+                    engine.parse(invalid);
+                    Assert.fail("Invalid json accepted : " + invalid);
+                } catch (JsParseException e) {
+                    Assert.assertEquals(1, e.getLine());
+                }
+            }
+        }
+        try {
+            parser.withLimits(ParseLimits.none().withMaxDepth(2)).parse("[[[1]]]");
+            Assert.fail("Limit not enforced");
+        } catch (JsParseLimitException e) {
+            Assert.assertEquals("depth", e.getLimit());
+        }
+    }
+
+    @Test
+    public void structuralEngineTest() {
+        JsParser jackson = JsParser.DEFAULT.withEngine(JsParser.Engine.JACKSON);
+        JsParser parser = JsParser.DEFAULT.withEngine(JsParser.Engine.STRUCTURAL);
+        // long enough to span several 8 bytes words, with structural characters and escaped quotes inside strings
+        String json = "{\"meta\":{\"count\":2,\"note\":\"a {tricky} [string], with: \\\"quotes\\\" and \\\\\"},"
+                + "\"items\":[{\"id\":1,\"tags\":[\"a\",\"b\"],\"geo\":[48.85,2.35]},{\"id\":123456789012345678901,\"tags\":[],\"ok\":true,\"no\":null}]}";
+        Assert.assertEquals(jackson.parse(json), parser.parse(json));
+        Assert.assertEquals(jackson.parse(json), parser.parse(json.getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals(jackson.parse(json, "meta.count", "items[1].id"), parser.parse(json, "meta.count", "items[1].id"));
+        Assert.assertEquals(jackson.parse(json, "items[*].tags"), parser.parse(json, "items[*].tags"));
+        Assert.assertEquals(jackson.parse(json, "missing"), parser.parse(json, "missing"));
+        Assert.assertEquals(jackson.parse("1 [1"), parser.parse("1 [1"));
+        for (String invalid : new String[]{"", "[1,]", "[1 2]", "{\"a\":1 x}", "[{}x]", "[1}", "{\"a\":[}", "[\"abc]", "1x"}) {
+            try {
+                parser.parse(invalid);
+                Assert.fail("Invalid json accepted : " + invalid);
+            } catch (JsParseException e) {
+                // expected
+            }
+        }
+        // values skipped by a projection, containers included, are still validated, so is what follows the root
+        for (String invalid : new String[]{"{\"a\":1,\"skip\": tru ,\"b\":2}", "{\"skip\":01,\"b\":2}", "{\"skip\":\"\\q\",\"b\":2}", "[nul, 2]",
+                "{\"skip\":{\"c\":.5e3},\"b\":2}", "{\"skip\":[\"\\4\"],\"b\":2}", "{\"skip\":[1,],\"b\":2}", "{\"skip\":{\"c\" 1},\"b\":2}", "[[tru],2]", "1-515]"}) {
+            try {
+                parser.parse(invalid, "b", "[1]");
+                Assert.fail("Invalid json accepted : " + invalid);
+            } catch (JsParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void writeToTest() throws Exception {
+        JsObject value = Json.obj($("name", "J\u00e9r\u00f4me"), $("tags", Json.arr("a", "b")), $("age", 42));
+        String expected = Json.stringify(value);
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        Json.writeTo(value, out);
+        out.write('\n');
+        Assert.assertEquals(expected + "\n", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        java.io.StringWriter writer = new java.io.StringWriter();
+        Json.writeTo(value, writer);
+        Assert.assertEquals(expected, writer.toString());
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        buffer.put((byte) ' ');
+        Json.writeTo(value, buffer);
+        buffer.flip();
+        buffer.get();
+        Assert.assertEquals(value, Json.parse(buffer));
+        Assert.assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), Json.toBytes(value));
+    }
+
+    @Test
+    public void numberWriterTest() {
+        String[][] expectations = {
+            {"0", "0"}, {"0.000", "0"}, {"42", "42"}, {"-42", "-42"}, {"3.0", "3"}, {"2.50", "2.5"},
+            {"1.5E+3", "1500"}, {"9223372036854775808", "9223372036854775808"},
+            {"1E+19", "10000000000000000000"}, {"1E+20", "1E+20"}, {"-1.2E+20", "-1.2E+20"},
+            {"123456789012345678901234", "123456789012345678901234"}, {"1.5E-7", "1.5E-7"}, {"0.00001", "0.00001"}
+        };
+        for (String[] expectation : expectations) {
+            JsNumber number = new JsNumber(new java.math.BigDecimal(expectation[0]));
+            Assert.assertEquals(expectation[1], new String(Json.toBytes(number), StandardCharsets.UTF_8));
+            Assert.assertEquals("[" + expectation[1] + "]", Json.toJackson(Json.arr(number)).toString());
+        }
+    }
+
+    @Test
+    public void stringifyTest() {
+        JsObject value = Json.obj(
+            $("quoted \"key\"", "tab\tand \\ and \u0001"),
+            $("numbers", Json.arr(new JsNumber(new java.math.BigDecimal("3.0")), new JsNumber(new java.math.BigDecimal("1E+21")), 0.5))
+        );
+        String json = Json.stringify(value);
+        Assert.assertEquals(new String(Json.toBytes(value), StandardCharsets.UTF_8), json);
+        Assert.assertTrue(json.contains("\"quoted \\\"key\\\"\":\"tab\\tand \\\\ and \\u0001\""));
+        Assert.assertTrue(json.contains("[3,1E+21,0.5]"));
+        Assert.assertEquals(value, Json.parse(json));
+        Assert.assertEquals("JsObject(" + json.substring(1, json.length() - 1) + ")", value.toString());
+        Assert.assertEquals("JsArray[1, \"a\\nb\"]", Json.arr(1, "a\nb").toString());
+    }
+
+    @Test
+    public void serializedTest() {
+        JsObject catalog = Json.obj($("name", "J\u00e9r\u00f4me"), $("tags", Json.arr("a", "b")), $("age", 42));
+        byte[] expected = Json.toBytes(catalog);
+        JsObject serialized = catalog.serialized();
+        Assert.assertSame(serialized, serialized.serialized());
+        Assert.assertEquals(catalog, serialized);
+        Assert.assertEquals(expected.length, catalog.serializedSize());
+        Assert.assertEquals(expected.length, serialized.serializedSize());
+        Assert.assertArrayEquals(expected, Json.toBytes(serialized));
+        // written bytes are flushed through buffered streams
+        java.io.ByteArrayOutputStream sink = new java.io.ByteArrayOutputStream();
+        Json.writeTo(serialized, new java.io.BufferedOutputStream(sink));
+        Assert.assertArrayEquals(expected, sink.toByteArray());
+        Assert.assertEquals(Json.stringify(catalog), Json.stringify(serialized));
+        JsObject response = Json.obj($("catalog", serialized), $("items", Json.arr(serialized, 1).serialized()));
+        Assert.assertEquals(Json.obj($("catalog", catalog), $("items", Json.arr(catalog, 1))), Json.parse(Json.toBytes(response)));
+        Assert.assertEquals(Json.stringify(response), Json.prettyPrint(response).replaceAll("\\s+(?=([^\"]*\"[^\"]*\")*[^\"]*$)", ""));
+        JsObject modified = serialized.with("age", 43);
+        Assert.assertEquals(Json.stringify(catalog.with("age", 43)), Json.stringify(modified));
+        Assert.assertEquals(2L, Json.toJson(42).serializedSize());
+    }
+
+    @Test
+    public void streamedWritersTest() {
+        Writer<Integer> writer = i -> Json.obj($("id", i), $("tags", Json.arr("t" + i).serialized()));
+        final int[] flushes = {0};
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        };
+        Json.writeArray(Iterator.range(0, 5), writer, out, 2);
+        Assert.assertEquals(Json.arr(Array.range(0, 5), writer), Json.parse(out.toByteArray()));
+        Assert.assertEquals(3, flushes[0]);
+        out.reset();
+        Json.writeArray(Iterator.empty(), writer, out);
+        Assert.assertEquals("[]", new String(out.toByteArray(), StandardCharsets.UTF_8));
+        out.reset();
+        Json.writeLines(Iterator.range(0, 3), writer, out);
+        String lines = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        Assert.assertEquals(Json.stringify(writer.write(0)) + "\n", lines.substring(0, lines.indexOf('\n') + 1));
+        Assert.assertEquals(3, lines.split("\n").length);
+        Assert.assertTrue(lines.endsWith("\n"));
+        Assert.assertEquals(Array.range(0, 3).map(writer::write), Array.ofAll(Json.parseLines(new ByteArrayInputStream(out.toByteArray()))));
+    }
+
+    @Test
+    public void rawFragmentsTest() {
+        String product = "{ \"price\" : 1.50, \"name\" : \"p1\" }";
+        JsValue first = Json.parseLazy(product);
+        JsValue second = Json.parseLazy("[1.0, 2]".getBytes(StandardCharsets.UTF_8));
+        JsObject response = Json.obj($("items", Json.arr(first, second)), $("first", first));
+        Assert.assertEquals(Json.stringify(response), new String(Json.toBytes(response), StandardCharsets.UTF_8));
+        java.io.StringWriter writer = new java.io.StringWriter();
+        Json.writeTo(response, writer);
+        Assert.assertEquals(Json.stringify(response), writer.toString());
+        Assert.assertTrue(Json.stringify(response).contains("[" + product + ",[1.0, 2]]"));
+        Assert.assertEquals(Json.prettyPrint(Json.parse(Json.stringify(response))), Json.prettyPrint(response));
+        Assert.assertEquals(new BigDecimal("1.50"), response.field("items").asArray().get(0).field("price").as(BigDecimal.class));
+        Assert.assertEquals(Json.obj($("price", new BigDecimal("1.50")), $("name", "p1")), first);
+    }
+
+    @Test
+    public void prettyFormatTest() {
+        JsObject value = Json.obj($("tags", Json.arr("a", "b")), $("empty", Json.arr()), $("items", Json.arr(Json.obj($("id", 1)), Json.obj())));
+        String lf = System.lineSeparator();
+        Assert.assertEquals(
+            "{" + lf + "  \"items\" : [ {" + lf + "    \"id\" : 1" + lf + "  }, { } ]" + lf + "}",
+            Json.prettyPrint(Json.obj($("items", Json.arr(Json.obj($("id", 1)), Json.obj()))))
+        );
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        Json.writePrettyTo(value, out);
+        Assert.assertEquals(Json.prettyPrint(value), new String(out.toByteArray(), StandardCharsets.UTF_8));
+        Assert.assertArrayEquals(out.toByteArray(), Json.toBytes(value, true));
+        JsValue matrix = Json.obj($("matrix", Json.arr(Json.arr(1, 2, 3), Json.arr("a much longer string", "that does not fit"))));
+        String pretty = Json.prettyPrint(matrix, PrettyFormat.standard().withIndent(4).withLineWidth(40));
+        Assert.assertEquals(
+            "{" + lf + "    \"matrix\" : [" + lf + "        [ 1, 2, 3 ]," + lf + "        [" + lf
+                + "            \"a much longer string\"," + lf + "            \"that does not fit\"" + lf + "        ]" + lf + "    ]" + lf + "}",
+            pretty
+        );
+        Assert.assertEquals(matrix, Json.parse(pretty));
+    }
+
+    @Test
+    public void canonicalDigestTest() throws Exception {
+        JsValue first = Json.parse("{ \"b\": [1.50, {\"z\": 1, \"y\": 2}], \"a\": \"\u00e9\", \"c\": 3.0 }");
+        JsValue second = Json.obj($("c", 3), $("a", "\u00e9"), $("b", Json.arr(1.5, Json.obj($("y", 2), $("z", 1))))).serialized();
+        byte[] canonical = Json.toCanonicalBytes(first);
+        Assert.assertEquals("{\"a\":\"\u00e9\",\"b\":[1.5,{\"y\":2,\"z\":1}],\"c\":3}", new String(canonical, StandardCharsets.UTF_8));
+        Assert.assertArrayEquals(canonical, Json.toCanonicalBytes(second));
+        Assert.assertArrayEquals(java.security.MessageDigest.getInstance("SHA-256").digest(canonical), first.digest("SHA-256"));
+        Assert.assertArrayEquals(first.digest("SHA-256"), second.digest("SHA-256"));
+        Assert.assertArrayEquals(first.digest("XXH64"), second.digest("xxh64"));
+        Assert.assertFalse(java.util.Arrays.equals(first.digest("XXH64"), Json.obj($("c", 4)).digest("XXH64")));
+        // XXH64 with seed 0 of "abc" (quotes included) and {"a":1,"b":[true,null]}
+        Assert.assertEquals(0xB1EECD3F6492C244L, ByteBuffer.wrap(new JsString("abc").digest("XXH64")).getLong());
+        Assert.assertEquals(0xE683E56028BFD869L, ByteBuffer.wrap(Json.parse("{\"b\":[true,null],\"a\":1.0}").digest("XXH64")).getLong());
+    }
+
     @Test
     public void foldErrorTest() {
         Throwable throwable = new RuntimeException("Oups");